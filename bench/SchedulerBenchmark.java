@@ -0,0 +1,331 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Micro benchmarks for MinHeap and RedBlackTree against the same operations on a JobStore,
+ * and end-to-end replay throughput of jobscheduler over generated traces, on nodes and on
+ * both stores.
+ * Each benchmark is warmed up, then timed over several iterations, reporting mean and best
+ * time per operation. Structures are kept at a steady size of n jobs while timed.
+ *
+ * Usage: java -cp out SchedulerBenchmark [maxExponent]
+ * sizes run from 10^3 to 10^maxExponent (default 6)
+ * The same operations are run under JMH by benchmarks.OperationBenchmark, through workload.
+ * @author KUNWAR
+ */
+public class SchedulerBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+    public static final int OPS = 100000;//Operations per iteration, an operation number is below it
+    private static final int KEY_RANGE_FACTOR = 4;//Keys drawn from [0, n * factor)
+
+    private static long sink;//Consumes results so work is not optimised away
+
+    public static void main(String[] args) throws IOException {
+        int maxExponent = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        System.out.println(String.format("%-40s %10s %12s %12s", "benchmark", "n", "mean ns/op", "best ns/op"));
+        for (int e = 3; e <= maxExponent; e++) {
+            int n = (int) Math.pow(10, e);
+            benchAll(n, heapOperations(n));
+            benchAll(n, treeOperations(n));
+        }
+        for (int e = 3; e <= Math.min(maxExponent, 6); e++) {
+            replayBenchmark((int) Math.pow(10, e));
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    /**
+     * Structures for an operation are built for it alone, so that only they take up the heap
+     * @param name Name of an operation of heapOperations or treeOperations
+     * @param n Number of jobs in structure
+     * @return operation, which takes an operation number and returns any value derived from its result
+     */
+    public static IntToLongFunction workload(String name, int n) {
+        IntToLongFunction op = heapOperations(n).get(name);
+        if (op == null) {
+            op = treeOperations(n).get(name);
+        }
+        if (op == null) {
+            throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+        return op;
+    }
+
+    private static void benchAll(int n, Map<String, IntToLongFunction> ops) {
+        for (Map.Entry<String, IntToLongFunction> op : ops.entrySet()) {
+            bench(op.getKey(), n, op.getValue());
+        }
+    }
+
+    /**
+     * Time OPS calls of op, after warm up
+     */
+    private static void bench(String name, int n, IntToLongFunction op) {
+        for (int w = 0; w < WARMUP_ITERATIONS; w++) {
+            runOps(op);
+        }
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for (int it = 0; it < ITERATIONS; it++) {
+            long start = System.nanoTime();
+            runOps(op);
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            best = Math.min(best, elapsed);
+        }
+        System.out.println(String.format("%-40s %10d %12.1f %12.1f", name, n,
+                (double) total / ITERATIONS / OPS, (double) best / OPS));
+    }
+
+    private static void runOps(IntToLongFunction op) {
+        long acc = 0;
+        for (int i = 0; i < OPS; i++) {
+            acc += op.applyAsLong(i);
+        }
+        sink += acc;
+    }
+
+    /**
+     * Random keys, precomputed so generation is not timed
+     */
+    private static int[] randomKeys(int count, int bound, long seed) {
+        Random random = new Random(seed);
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextInt(bound);
+        }
+        return keys;
+    }
+
+    /**
+     * Operations on heaps of n jobs, by name. Operations sharing a heap are run one after another
+     */
+    private static Map<String, IntToLongFunction> heapOperations(int n) {
+        Map<String, IntToLongFunction> ops = new LinkedHashMap<String, IntToLongFunction>();
+        final MinHeap heap = new MinHeap();
+        final int[] keys = randomKeys(Math.max(n, OPS), 1000, 1);
+        for (int i = 0; i < n; i++) {
+            heap.insert(new HeapNode(keys[i]));
+        }
+        //Like a slot end: take the least executed job, run it and put it back
+        ops.put("MinHeap.extractMin+insert", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                HeapNode p = heap.extractMin();
+                p.key += 5;
+                heap.insert(p);
+                return p.key;
+            }
+        });
+
+        final BucketQueue queue = new BucketQueue();
+        for (int i = 0; i < n; i++) {
+            queue.insert(new HeapNode(keys[i]));
+        }
+        ops.put("BucketQueue.extractMin+insert", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                HeapNode p = queue.extractMin();
+                p.key += 5;
+                queue.insert(p);
+                return p.key;
+            }
+        });
+
+        final JobStore store = new JobStore(n);
+        for (int i = 0; i < n; i++) {
+            int s = store.allocate(i, Integer.MAX_VALUE);
+            store.setExecutedTime(s, keys[i]);
+            store.heapInsert(s);
+        }
+        ops.put("JobStore.extractMin+heapInsert", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                int s = store.extractMin();
+                int executed = store.executedTime(s) + 5;
+                store.setExecutedTime(s, executed);
+                store.heapInsert(s);
+                return executed;
+            }
+        });
+
+        final HeapNode[] nodes = new HeapNode[OPS];
+        for (int i = 0; i < OPS; i++) {
+            nodes[i] = new HeapNode(keys[i]);
+        }
+        ops.put("MinHeap.insert+extractMin", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                HeapNode p = nodes[i];
+                p.key = keys[i];
+                heap.insert(p);
+                return heap.extractMin().key;
+            }
+        });
+        return ops;
+    }
+
+    /**
+     * Operations on trees of n jobs, by name
+     */
+    private static Map<String, IntToLongFunction> treeOperations(int n) {
+        Map<String, IntToLongFunction> ops = new LinkedHashMap<String, IntToLongFunction>();
+        final RedBlackTree tree = new RedBlackTree();
+        int bound = n * KEY_RANGE_FACTOR;
+        //Distinct keys: every factor-th value, shuffled
+        int[] present = new int[n];
+        for (int i = 0; i < n; i++) {
+            present[i] = i * KEY_RANGE_FACTOR;
+        }
+        Random random = new Random(2);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = present[i];
+            present[i] = present[j];
+            present[j] = temp;
+        }
+        for (int i = 0; i < n; i++) {
+            tree.insertNode(new RBNode(present[i]));
+        }
+        final int[] keys = randomKeys(OPS, bound, 3);
+        final int[] presentKeys = present;
+
+        ops.put("RedBlackTree.search", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                RBNode node = tree.search(keys[i]);
+                return node == null ? 0 : node.key;
+            }
+        });
+        ops.put("RedBlackTree.smallestGreaterThanK", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                RBNode node = tree.smallestGreaterThanK(keys[i]);
+                return node == null ? 0 : node.key;
+            }
+        });
+        ops.put("RedBlackTree.searchInRange(width 100)", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                return tree.searchInRange(keys[i], keys[i] + 100).size();
+            }
+        });
+
+        final JobStore store = new JobStore(n);
+        for (int i = 0; i < n; i++) {
+            store.insertNode(store.allocate(present[i], 1));
+        }
+        ops.put("JobStore.search", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                return store.jobId(store.search(keys[i]));
+            }
+        });
+        final int[] range = new int[128];
+        ops.put("JobStore.searchInRange(width 100)", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                return store.searchInRange(keys[i], keys[i] + 100, range);
+            }
+        });
+        //Odd keys are never present, so each insert is followed by deleting the same node
+        final RBNode[] nodes = new RBNode[OPS];
+        for (int i = 0; i < OPS; i++) {
+            nodes[i] = new RBNode(keys[i] | 1);
+        }
+        ops.put("RedBlackTree.insertNode+delete", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                RBNode node = nodes[i];
+                node.left = tree.nil;
+                node.right = tree.nil;
+                node.parent = tree.nil;
+                tree.insertNode(node);
+                tree.delete(node);
+                return node.key;
+            }
+        });
+        ops.put("RedBlackTree.delete+insertNode", new IntToLongFunction() {
+            public long applyAsLong(int i) {
+                RBNode node = tree.search(presentKeys[i % presentKeys.length]);
+                tree.delete(node);
+                node.left = tree.nil;
+                node.right = tree.nil;
+                node.parent = tree.nil;
+                tree.insertNode(node);
+                return node.key;
+            }
+        });
+        return ops;
+    }
+
+    /**
+     * Replay a generated trace of given number of commands and report commands per second
+     * @param commands
+     * @throws IOException
+     */
+    private static void replayBenchmark(int commands) throws IOException {
+        File trace = File.createTempFile("trace", ".txt");
+        File output = File.createTempFile("output", ".txt");
+        trace.deleteOnExit();
+        output.deleteOnExit();
+        commands = (int) generateTrace(trace, commands);
+
+        replay("jobscheduler replay", trace, output, commands);
+        File storeFile = File.createTempFile("jobs", ".store");
+        storeFile.deleteOnExit();
+        System.setProperty("storeFile", storeFile.getPath());
+        try {
+            for (String store : new String[]{"arrays", "mapped"}) {
+                System.setProperty("store", store);
+                replay("jobscheduler replay store=" + store, trace, output, commands);
+            }
+        } finally {
+            System.clearProperty("store");
+            System.clearProperty("storeFile");
+        }
+    }
+
+    /**
+     * 40% inserts, rest point and range queries
+     * @return number of commands written
+     */
+    private static long generateTrace(File trace, int commands) throws IOException {
+        TraceGenerator generator = new TraceGenerator();
+        generator.jobs = commands * 4 / 10;
+        generator.maxTotal = 500;
+        generator.seed = 4;
+        return generator.generate(trace.getPath());
+    }
+
+    /**
+     * Replay of a generated trace, as timed by replayBenchmark. Every run replays the whole
+     * trace on a new jobscheduler, which takes its options from system properties then.
+     * @param commands Number of commands of trace
+     * @return replay, writing output to a temporary file
+     * @throws IOException
+     */
+    public static Runnable replayWorkload(int commands) throws IOException {
+        final File trace = File.createTempFile("trace", ".txt");
+        final File output = File.createTempFile("output", ".txt");
+        trace.deleteOnExit();
+        output.deleteOnExit();
+        generateTrace(trace, commands);
+        return new Runnable() {
+            @Override
+            public void run() {
+                new jobscheduler().begin(trace, output.getPath());
+            }
+        };
+    }
+
+    /**
+     * Warm up on the trace, then time the best of a few replays
+     */
+    private static void replay(String name, File trace, File output, int commands) {
+        long best = Long.MAX_VALUE;
+        for (int it = 0; it < 5; it++) {
+            long start = System.nanoTime();
+            new jobscheduler().begin(trace, output.getPath());
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println(String.format("%-40s %10d %12.1f %12s  (%.0f commands/s)", name, commands,
+                (double) best / commands, "-", commands / (best / 1e9)));
+    }
+}
@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic scheduler input in the "time: Command(args)" format.
+ * Lines are formatted into the buffer of an OutputSink and streamed to disk, so memory use
+ * does not depend on trace length and files of billions of lines can be produced.
+ *
+ * Options are passed as system properties, e.g.
+ * java -cp out -Djobs=100000000 -Darrival=bursty -DtotalTime=pareto TraceGenerator trace.txt
+ * @author KUNWAR
+ */
+public class TraceGenerator {
+
+    //Command kinds, in the order of weights in mix
+    private static final String[] KINDS = {
+            "insert", "batch", "print", "range", "next", "previous", "count", "rank", "select"
+    };
+    private static final byte[][] NAMES = {
+            "Insert(".getBytes(), "InsertBatch(".getBytes(), "PrintJob(".getBytes(),
+            "PrintJob(".getBytes(), "NextJob(".getBytes(), "PreviousJob(".getBytes(),
+            "CountJobs(".getBytes(), "RankJob(".getBytes(), "SelectJob(".getBytes()
+    };
+    private static final byte[] SEPARATOR = ": ".getBytes();
+    private static final byte[] CLOSE = ")".getBytes();
+    private static final int RANDOM_ID_MULTIPLIER = 0x9E3779B1;//Odd, so a bijection mod 2^31
+
+    public long jobs = 1000000;//Number of jobs inserted, generation stops after the last one
+    public String arrival = "poisson";//poisson, bursty or constant
+    public double meanGap = 10;//Mean ms between commands
+    public double burstLength = 50;//Mean number of commands per burst, for bursty arrivals
+    public String totalTime = "pareto";//pareto, uniform or exponential
+    public int minTotal = 2;//Smallest total_time
+    public int maxTotal = 1000000;//Largest total_time, heavy tail is cut here
+    public double alpha = 1.2;//Pareto shape, smaller means heavier tail
+    public double meanTotal = 500;//Mean total_time, for exponential
+    public String ids = "sequential";//sequential, or random for scattered unique IDs
+    public int[] mix = {40, 0, 20, 20, 10, 10, 0, 0, 0};//Relative weights of KINDS
+    public int batchSize = 100;//Jobs per InsertBatch
+    public int rangeWidth = 100;//high - low of range queries
+    public long seed = 1;
+
+    private SplittableRandom random;
+    private int burstRemaining = 0;//Commands left in current burst
+    private long inserted = 0;//Jobs inserted so far, the n-th job gets id(n)
+
+    /**
+     * Output file as argument, options as system properties named like the fields
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        TraceGenerator generator = new TraceGenerator();
+        generator.jobs = Long.getLong("jobs", generator.jobs);
+        generator.arrival = System.getProperty("arrival", generator.arrival);
+        generator.meanGap = doubleProperty("meanGap", generator.meanGap);
+        generator.burstLength = doubleProperty("burstLength", generator.burstLength);
+        generator.totalTime = System.getProperty("totalTime", generator.totalTime);
+        generator.minTotal = Integer.getInteger("minTotal", generator.minTotal);
+        generator.maxTotal = Integer.getInteger("maxTotal", generator.maxTotal);
+        generator.alpha = doubleProperty("alpha", generator.alpha);
+        generator.meanTotal = doubleProperty("meanTotal", generator.meanTotal);
+        generator.ids = System.getProperty("ids", generator.ids);
+        if (System.getProperty("mix") != null) {
+            generator.mix = parseMix(System.getProperty("mix"));
+        }
+        generator.batchSize = Integer.getInteger("batchSize", generator.batchSize);
+        generator.rangeWidth = Integer.getInteger("rangeWidth", generator.rangeWidth);
+        generator.seed = Long.getLong("seed", generator.seed);
+
+        long lines = generator.generate(args[0]);
+        System.out.println("Wrote " + lines + " commands with " + generator.inserted + " jobs to " + args[0]);
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * @param spec e.g. "insert:40,print:20,range:20,next:10,previous:10"
+     * @return weights in order of KINDS, 0 for kinds not listed
+     * @throws IllegalArgumentException on unknown kind
+     */
+    static int[] parseMix(String spec) {
+        int[] weights = new int[KINDS.length];
+        for (String entry : spec.split(",")) {
+            String[] pair = entry.trim().split(":");
+            int kind = kindOf(pair[0]);
+            if (kind < 0 || pair.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry: " + entry);
+            }
+            weights[kind] = Integer.parseInt(pair[1]);
+        }
+        return weights;
+    }
+
+    private static int kindOf(String name) {
+        for (int i = 0; i < KINDS.length; i++) {
+            if (KINDS[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Write trace to file
+     * @param fileName
+     * @return number of commands written
+     * @throws IOException
+     * @throws IllegalArgumentException if mix has no insert or batch weight, so it would never end
+     */
+    public long generate(String fileName) throws IOException {
+        int totalWeight = 0;
+        for (int w : mix) totalWeight += w;
+        if (mix[0] + mix[1] <= 0) {
+            throw new IllegalArgumentException("Mix must contain insert or batch");
+        }
+        random = new SplittableRandom(seed);
+        burstRemaining = 0;
+        inserted = 0;
+
+        OutputSink out = new OutputSink(fileName);
+        long lines = 0;
+        try {
+            long time = 0;
+            while (inserted < jobs) {
+                time += nextGap();
+                if (time > Integer.MAX_VALUE) {
+                    System.err.println("Stopped at time " + Integer.MAX_VALUE + " ms, use a smaller meanGap for longer traces");
+                    break;
+                }
+                int kind = pick(totalWeight);
+                if (inserted == 0) {
+                    kind = mix[0] > 0 ? 0 : 1;//Queries need a job to refer to
+                }
+                out.writeInt((int) time);
+                out.writeBytes(SEPARATOR);
+                out.writeBytes(NAMES[kind]);
+                writeArgs(out, kind);
+                out.writeBytes(CLOSE);
+                out.writeNewLine();
+                lines++;
+            }
+        } finally {
+            out.close();
+        }
+        return lines;
+    }
+
+    private int pick(int totalWeight) {
+        int r = random.nextInt(totalWeight);
+        int kind = 0;
+        while (r >= mix[kind]) {
+            r -= mix[kind];
+            kind++;
+        }
+        return kind;
+    }
+
+    private void writeArgs(OutputSink out, int kind) throws IOException {
+        switch (KINDS[kind]) {
+            case "insert": {
+                out.writeInt(id(++inserted));
+                out.writeComma();
+                out.writeInt(nextTotalTime());
+                break;
+            }
+            case "batch": {
+                int n = (int) Math.min(batchSize, jobs - inserted);
+                for (int i = 0; i < n; i++) {
+                    if (i > 0) out.writeComma();
+                    out.writeInt(id(++inserted));
+                    out.writeComma();
+                    out.writeInt(nextTotalTime());
+                }
+                break;
+            }
+            case "range":
+            case "count": {
+                int low = existingId();
+                out.writeInt(low);
+                out.writeComma();
+                out.writeInt((int) Math.min((long) low + rangeWidth, Integer.MAX_VALUE));
+                break;
+            }
+            case "select": {
+                out.writeInt(1 + random.nextInt((int) Math.min(inserted, Integer.MAX_VALUE)));
+                break;
+            }
+            default: {
+                //print, next, previous and rank take a jobID
+                out.writeInt(existingId());
+            }
+        }
+    }
+
+    /**
+     * Gaps are at least 1 ms: the input format expects a command per timestamp, and the
+     * original driver counts up to the next timestamp, so a repeated one makes it wrap round.
+     * @return ms until next command, at least 1
+     */
+    private long nextGap() {
+        switch (arrival) {
+            case "constant":
+                return Math.max(Math.round(meanGap), 1);
+            case "bursty": {
+                //Commands of a burst are 1 ms apart. Bursts of geometric length are spread
+                //so that the long run rate is the same as for poisson
+                if (burstRemaining > 0) {
+                    burstRemaining--;
+                    return 1;
+                }
+                burstRemaining = geometric(burstLength) - 1;
+                return Math.max(Math.round(exponential(Math.max(meanGap * burstLength - (burstLength - 1), 1))), 1);
+            }
+            default:
+                return Math.max(Math.round(exponential(meanGap)), 1);
+        }
+    }
+
+    private int nextTotalTime() {
+        double value;
+        switch (totalTime) {
+            case "uniform":
+                return minTotal + random.nextInt(maxTotal - minTotal + 1);
+            case "exponential":
+                value = minTotal + exponential(meanTotal - minTotal);
+                break;
+            default:
+                //Pareto by inversion, heavy tailed for alpha <= 2
+                value = minTotal / Math.pow(1 - random.nextDouble(), 1 / alpha);
+        }
+        return (int) Math.min(value, maxTotal);
+    }
+
+    private double exponential(double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    /**
+     * @param mean at least 1
+     * @return number of trials up to first success, at least 1
+     */
+    private int geometric(double mean) {
+        if (mean <= 1) return 1;
+        double p = 1 / mean;
+        return 1 + (int) Math.min(Math.log(1 - random.nextDouble()) / Math.log(1 - p), Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * @return ID of a uniformly chosen job inserted so far, it may have completed already
+     */
+    private int existingId() {
+        return id(1 + (long) (random.nextDouble() * inserted));
+    }
+
+    /**
+     * IDs are unique for n up to 2^31 - 1. Random IDs multiply n by an odd constant
+     * modulo 2^31, which scatters them over the whole int range without repeats.
+     * @param n number of the job, from 1
+     * @return jobID of n-th job, always positive
+     */
+    private int id(long n) {
+        if ("random".equals(ids)) {
+            return (int) ((n * RANDOM_ID_MULTIPLIER) & Integer.MAX_VALUE);
+        }
+        return (int) n;
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The micro benchmarks of SchedulerBenchmark under JMH: every operation at steady structure
+ * sizes from 10^3 to 10^7 jobs, each in forked JVMs, with results consumed by JMH's blackhole.
+ * JMH needs benchmarks in a named package, and the scheduler classes are in the default one,
+ * so the operation is built by SchedulerBenchmark.workload, found by reflection at setup, and
+ * then called through IntToLongFunction, which the JIT inlines.
+ *
+ * Usage: mvn -Pjmh package, then java -jar target/benchmarks.jar OperationBenchmark
+ * @author KUNWAR
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx6g")
+public class OperationBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int n;
+
+    @Param({
+            "MinHeap.extractMin+insert",
+            "BucketQueue.extractMin+insert",
+            "JobStore.extractMin+heapInsert",
+            "MinHeap.insert+extractMin",
+            "RedBlackTree.search",
+            "RedBlackTree.smallestGreaterThanK",
+            "RedBlackTree.searchInRange(width 100)",
+            "JobStore.search",
+            "JobStore.searchInRange(width 100)",
+            "RedBlackTree.insertNode+delete",
+            "RedBlackTree.delete+insertNode",
+    })
+    public String workload;
+
+    private IntToLongFunction op;
+    private int ops;//Operation numbers run from 0 to ops - 1
+    private int i = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Class<?> benchmark = Class.forName("SchedulerBenchmark");
+        op = (IntToLongFunction) benchmark.getMethod("workload", String.class, int.class).invoke(null, workload, n);
+        ops = benchmark.getField("OPS").getInt(null);
+    }
+
+    @Benchmark
+    public long operation() {
+        long result = op.applyAsLong(i);
+        if (++i == ops) {
+            i = 0;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end replay of a generated trace of 10^3 to 10^7 commands by jobscheduler under JMH,
+ * on tree and heap nodes and on both job stores. The trace is generated once per trial by
+ * SchedulerBenchmark.replayWorkload, found by reflection as for OperationBenchmark.
+ *
+ * Usage: mvn -Pjmh package, then java -jar target/benchmarks.jar ReplayBenchmark
+ * @author KUNWAR
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ReplayBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int commands;
+
+    @Param({"nodes", "arrays", "mapped"})
+    public String store;
+
+    private Runnable replay;
+    private File storeFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (!"nodes".equals(store)) {
+            storeFile = File.createTempFile("jobs", ".store");
+            System.setProperty("store", store);
+            System.setProperty("storeFile", storeFile.getPath());
+        }
+        replay = (Runnable) Class.forName("SchedulerBenchmark").getMethod("replayWorkload", int.class).invoke(null, commands);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty("store");
+        System.clearProperty("storeFile");
+        if (storeFile != null) {
+            storeFile.delete();
+        }
+    }
+
+    @Benchmark
+    public void replay() {
+        replay.run();
+    }
+}
@@ -0,0 +1,278 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bucket (calendar) queue on executed time, an alternative to MinHeap for small integer keys.
+ * There is one FIFO bucket per key, linked through HeapNode.next. Buckets form a sliding window
+ * of a fixed number of keys starting at the smallest key in the queue, kept in a ring so the
+ * window slides without copying. Non-empty buckets are marked in a bitmap with summary levels
+ * above it, one bit per 64 bits of the level below, so the next non-empty bucket is found with
+ * one word scan per level.
+ *
+ * Keys at least a window above the smallest one wait in an ordered overflow map of buckets and
+ * move into the window as it slides up to them. Under round robin on executed time, waiting keys
+ * stay within about a quantum of the smallest one, so with a window of a few quanta insert and
+ * extractMin are O(1) plus O(log64 window), without comparisons between jobs. Overflow is only
+ * used when jobs far apart in executed time wait together, e.g. a new job arriving with executed
+ * time 0 while others have run for a long time, and costs O(log n) per distinct overflow key.
+ *
+ * Keys need not be monotone: jobs may be inserted with keys below the smallest one, as new jobs
+ * arrive with executed time 0, the window then moves down. Memory is O(window + jobs), however
+ * large executed times get. Jobs with equal keys leave in arrival order.
+ * @author KUNWAR
+ */
+public class BucketQueue {
+
+    public int size = 0;//Number of jobs in queue
+    private final int window;//Number of buckets, a power of two
+    private final int mask;
+    private final HeapNode[] head;//First job of bucket of key k at k & mask, null if empty
+    private final HeapNode[] tail;//Last job of every bucket
+    private final long[][] levels;//levels[0] has a bit per bucket, levels[i+1] a bit per word of levels[i]
+    private int base = 0;//Smallest key the window holds, keys in window are in [base, base + window)
+    private final TreeMap<Integer, HeapNode[]> overflow = new TreeMap<Integer, HeapNode[]>();//Key to first and last job, keys >= base + window
+
+    public BucketQueue() {
+        this(1024);
+    }
+
+    /**
+     * @param window Number of keys above the smallest one kept in buckets, rounded up to a power of two
+     */
+    public BucketQueue(int window) {
+        if (window < 1 || window > 1 << 30) {
+            throw new IllegalArgumentException("Window must be between 1 and 2^30 keys: " + window);
+        }
+        int n = 64;
+        while (n < window) {
+            n *= 2;
+        }
+        this.window = n;
+        mask = n - 1;
+        head = new HeapNode[n];
+        tail = new HeapNode[n];
+        levels = buildLevels(n);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Append job to the bucket of its executed time
+     * @param p
+     * @throws IllegalArgumentException if executed time is negative
+     */
+    public void insert(HeapNode p) {
+        int k = p.key;
+        if (k < 0) {
+            throw new IllegalArgumentException("Key must not be negative: " + k);
+        }
+        p.next = null;
+        if (size == 0) {
+            base = k;
+        }
+        else if (k < base) {
+            moveWindowDown(k);
+        }
+        size++;
+        if (inWindow(k)) {
+            append(k, p);
+        }
+        else {
+            HeapNode[] bucket = overflow.get(k);
+            if (bucket == null) {
+                overflow.put(k, new HeapNode[]{p, p});
+            }
+            else {
+                bucket[1].next = p;
+                bucket[1] = p;
+            }
+        }
+    }
+
+    /**
+     * Removes first job of the smallest non-empty bucket
+     * @return job with least executed time, or null if queue is empty
+     */
+    public HeapNode extractMin() {
+        if (size == 0) {
+            return null;
+        }
+        int min = nextKey(base);//Window holds the smallest key whenever queue is not empty
+        int b = min & mask;
+        HeapNode p = head[b];
+        head[b] = p.next;
+        p.next = null;
+        if (head[b] == null) {
+            tail[b] = null;
+            clearBit(b);
+        }
+        size--;
+        if (size > 0) {
+            //Slide window up to the new smallest key
+            int next = nextKey(min);
+            base = next >= 0 ? next : overflow.firstKey();
+            pullOverflow();
+        }
+        return p;
+    }
+
+    /**
+     * @return all jobs in the order they would be extracted
+     */
+    public HeapNode[] toArray() {
+        HeapNode[] jobs = new HeapNode[size];
+        int i = 0;
+        long end = (long) base + window;
+        for (long k = nextKey(base); k >= 0 && k < end; k = k + 1 < end ? nextKey((int) k + 1) : -1) {
+            for (HeapNode p = head[(int) k & mask]; p != null; p = p.next) {
+                jobs[i++] = p;
+            }
+        }
+        for (HeapNode[] bucket : overflow.values()) {
+            for (HeapNode p = bucket[0]; p != null; p = p.next) {
+                jobs[i++] = p;
+            }
+        }
+        return jobs;
+    }
+
+    private boolean inWindow(int k) {
+        return k >= base && (long) k < (long) base + window;
+    }
+
+    private void append(int k, HeapNode p) {
+        int b = k & mask;
+        if (head[b] == null) {
+            head[b] = p;
+            setBit(b);
+        }
+        else {
+            tail[b].next = p;
+        }
+        tail[b] = p;
+    }
+
+    /**
+     * Start window at key below base. Buckets of keys that no longer fit go to overflow.
+     * Only non-empty buckets are visited, found through the bitmap as in extractMin.
+     * @param k New base
+     */
+    private void moveWindowDown(int k) {
+        long from = Math.max((long) k + window, base);//Keys in [from, base + window) leave the window
+        long end = (long) base + window;
+        for (long key = nextKey((int) from); key >= from && key < end; key = key + 1 < end ? nextKey((int) key + 1) : -1) {
+            int b = (int) key & mask;
+            overflow.put((int) key, new HeapNode[]{head[b], tail[b]});
+            head[b] = null;
+            tail[b] = null;
+            clearBit(b);
+        }
+        base = k;
+    }
+
+    /**
+     * Move overflow buckets whose keys now fit in the window
+     */
+    private void pullOverflow() {
+        while (!overflow.isEmpty() && (long) overflow.firstKey() < (long) base + window) {
+            Map.Entry<Integer, HeapNode[]> entry = overflow.pollFirstEntry();
+            int b = entry.getKey() & mask;
+            head[b] = entry.getValue()[0];
+            tail[b] = entry.getValue()[1];
+            setBit(b);
+        }
+    }
+
+    /**
+     * Smallest key with a non-empty bucket in the window, not less than from.
+     * When window keys are in [from, from + window), the bucket positions from
+     * from & mask onwards, wrapping round, are in key order. Otherwise a result
+     * at or above base + window stands for a key below from.
+     * @param from
+     * @return key, or -1 if there is none
+     */
+    private int nextKey(int from) {
+        int start = from & mask;
+        int b = nextBucket(start);
+        if (b < 0) {
+            b = nextBucket(0);
+            if (b < 0 || b >= start) {
+                return -1;
+            }
+        }
+        return from + ((b - start) & mask);
+    }
+
+    /**
+     * Smallest non-empty bucket position not less than from. Goes up the levels until a word
+     * has a set bit at or after the position, then down following the lowest set bits.
+     * @param from
+     * @return bucket, or -1 if there is none
+     */
+    private int nextBucket(int from) {
+        int pos = from;
+        int level = 0;
+        while (true) {
+            if (level == levels.length) {
+                return -1;
+            }
+            long[] words = levels[level];
+            int w = pos >>> 6;
+            if (w >= words.length) {
+                return -1;
+            }
+            long bits = words[w] & (-1L << (pos & 63));
+            if (bits != 0) {
+                pos = (w << 6) + Long.numberOfTrailingZeros(bits);
+                break;
+            }
+            pos = w + 1;//Next word of this level is the next bit of the level above
+            level++;
+        }
+        while (level > 0) {
+            level--;
+            pos = (pos << 6) + Long.numberOfTrailingZeros(levels[level][pos]);
+        }
+        return pos;
+    }
+
+    private void setBit(int b) {
+        for (long[] words : levels) {
+            words[b >>> 6] |= 1L << b;
+            b >>>= 6;
+        }
+    }
+
+    /**
+     * Clear bit of bucket b, and bits of summary words that become empty
+     */
+    private void clearBit(int b) {
+        for (long[] words : levels) {
+            words[b >>> 6] &= ~(1L << b);
+            if (words[b >>> 6] != 0) {
+                return;
+            }
+            b >>>= 6;
+        }
+    }
+
+    /**
+     * @param buckets Number of buckets
+     * @return empty levels up to a single word
+     */
+    private static long[][] buildLevels(int buckets) {
+        int count = 1;
+        for (long words = (buckets + 63L) >>> 6; words > 1; words = (words + 63) >>> 6) {
+            count++;
+        }
+        long[][] result = new long[count][];
+        long words = (buckets + 63L) >>> 6;
+        for (int i = 0; i < count; i++) {
+            result[i] = new long[(int) words];
+            words = (words + 63) >>> 6;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Dispatch the job with least executed time, for a fixed quantum, like LeastExecutedPolicy,
+ * but backed by a BucketQueue: O(1) insert and near constant extractMin instead of
+ * O(log n) sifting. Jobs with equal executed time are dispatched first come first served.
+ * @author KUNWAR
+ */
+public class BucketQueuePolicy implements SchedulingPolicy {
+
+    private final BucketQueue queue;
+    private final int quantum;
+
+    /**
+     * @param quantum Time slice in ms
+     */
+    public BucketQueuePolicy(int quantum) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be at least 1 ms: " + quantum);
+        }
+        this.quantum = quantum;
+        //Requeued jobs are at most a quantum ahead of the least executed one, so a few quanta of buckets hold them
+        queue = new BucketQueue(Math.max(1024, 4 * Math.min(quantum, 1 << 28)));
+    }
+
+    public void add(HeapNode job) {
+        queue.insert(job);
+    }
+
+    public void addAll(HeapNode[] jobs, int n) {
+        for (int i = 0; i < n; i++) {
+            queue.insert(jobs[i]);
+        }
+    }
+
+    public void requeue(HeapNode job) {
+        queue.insert(job);
+    }
+
+    public HeapNode next() {
+        return queue.extractMin();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int size() {
+        return queue.size;
+    }
+
+    public int quantum(HeapNode job) {
+        return quantum;
+    }
+
+    public String settings() {
+        return "quantum=" + quantum;
+    }
+
+    /**
+     * Buckets in key order, each first come first served
+     */
+    public HeapNode[] waitingJobs() {
+        HeapNode[] jobs = queue.toArray();
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i].index = i;
+        }
+        return jobs;
+    }
+
+    /**
+     * Appending in extraction order restores every bucket in the same order
+     */
+    public void restore(HeapNode[] jobs, int n) {
+        addAll(jobs, n);
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+
+/**
+ * Binary snapshot of a Scheduler, together with how far the input has been read and the
+ * output written, so that a replay can continue from it instead of from the first line.
+ *
+ * Layout: header (magic, version, policy class and settings such as heap arity and quantum,
+ * time, input and output offsets, number of processors, jobs and waiting jobs), then one record per job in jobID order
+ * (jobID, executed time, total time, queue level, slot), then slot end and completion time
+ * of every processor. Slot is the position of a waiting job in policy order, or -1-p for a
+ * job running on processor p. Restoring rebuilds tree and policy in linear time.
+ * @author KUNWAR
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x4A534350;//"JSCP"
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public final int time;//Global time
+    public final long inputOffset;//Offset of first input line not yet executed
+    public final long outputOffset;//Length of output written up to the checkpoint
+
+    //State captured by capture, in jobID order, null for a restored checkpoint
+    private String policy;
+    private String settings;
+    private int[] jobIds;
+    private int[] executedTimes;
+    private int[] totalTimes;
+    private byte[] levels;
+    private int[] slots;
+    private int waitingCount;
+    private int[] slotEndTimes;//Per processor
+    private int[] completionTimes;
+
+    private Checkpoint(int time, long inputOffset, long outputOffset) {
+        this.time = time;
+        this.inputOffset = inputOffset;
+        this.outputOffset = outputOffset;
+    }
+
+    /**
+     * Write checkpoint of scheduler, between two commands. File is replaced atomically,
+     * so a crash while writing leaves the previous checkpoint intact.
+     * @param file
+     * @param scheduler
+     * @param inputOffset Offset of next input line
+     * @param outputOffset Length of output so far, which must already be flushed
+     * @throws IOException
+     */
+    public static void save(File file, Scheduler scheduler, long inputOffset, long outputOffset) throws IOException {
+        capture(scheduler, inputOffset, outputOffset).save(file);
+    }
+
+    /**
+     * Copy the state of scheduler, between two commands, so that it can be saved while the
+     * scheduler carries on. Executed times, levels and slots change in place as jobs run,
+     * so they are copied for every job, which takes O(n) but no I/O.
+     * @param scheduler
+     * @param inputOffset Offset of next input line
+     * @param outputOffset Length of output so far, which must already be flushed when saved
+     * @return checkpoint to save
+     */
+    public static Checkpoint capture(Scheduler scheduler, long inputOffset, long outputOffset) {
+        Checkpoint checkpoint = new Checkpoint(scheduler.time(), inputOffset, outputOffset);
+        Processor[] processors = scheduler.processors;
+        int n = scheduler.index.size();
+        checkpoint.policy = scheduler.policy.getClass().getName();
+        checkpoint.settings = scheduler.policy.settings();
+        checkpoint.waitingCount = scheduler.policy.waitingJobs().length;//Numbers waiting jobs by position
+        checkpoint.jobIds = new int[n];
+        checkpoint.executedTimes = new int[n];
+        checkpoint.totalTimes = new int[n];
+        checkpoint.levels = new byte[n];
+        checkpoint.slots = new int[n];
+        int i = 0;
+        Iterator<RBNode> cursor = scheduler.index.rangeCursor(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        while (cursor.hasNext()) {
+            RBNode node = cursor.next();
+            HeapNode job = node.heapNode;
+            checkpoint.jobIds[i] = node.key;
+            checkpoint.executedTimes[i] = job.key;
+            checkpoint.totalTimes[i] = node.totalTime;
+            checkpoint.levels[i] = (byte) job.level;
+            checkpoint.slots[i] = slot(job, processors);
+            i++;
+        }
+        checkpoint.slotEndTimes = new int[processors.length];
+        checkpoint.completionTimes = new int[processors.length];
+        for (int p = 0; p < processors.length; p++) {
+            checkpoint.slotEndTimes[p] = processors[p].currentSlotEndTime;
+            checkpoint.completionTimes[p] = processors[p].currentJobCompletionTime;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Write captured state. File is replaced atomically, so a crash while writing leaves
+     * the previous checkpoint intact.
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        if (jobIds == null) {
+            throw new IllegalStateException("Only a captured checkpoint can be saved");
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(policy);
+            out.writeUTF(settings);
+            out.writeInt(time);
+            out.writeLong(inputOffset);
+            out.writeLong(outputOffset);
+            out.writeInt(slotEndTimes.length);
+            out.writeInt(jobIds.length);
+            out.writeInt(waitingCount);
+
+            for (int i = 0; i < jobIds.length; i++) {
+                out.writeInt(jobIds[i]);
+                out.writeInt(executedTimes[i]);
+                out.writeInt(totalTimes[i]);
+                out.writeByte(levels[i]);
+                out.writeInt(slots[i]);
+            }
+            for (int p = 0; p < slotEndTimes.length; p++) {
+                out.writeInt(slotEndTimes[p]);
+                out.writeInt(completionTimes[p]);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param job
+     * @param processors
+     * @return -1-p if job runs on processor p, else its position among waiting jobs
+     */
+    private static int slot(HeapNode job, Processor[] processors) {
+        for (int p = 0; p < processors.length; p++) {
+            if (processors[p].currentJob == job) return -1 - p;
+        }
+        return job.index;
+    }
+
+    /**
+     * Load checkpoint into an empty scheduler with the same number of processors, policy and policy settings
+     * @param file
+     * @param scheduler
+     * @return time and offsets to continue input and output from
+     * @throws IOException if file is not a checkpoint or does not match scheduler
+     */
+    public static Checkpoint restore(File file, Scheduler scheduler) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a scheduler checkpoint");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Checkpoint has format version " + version + ", expected " + VERSION);
+            }
+            String policy = in.readUTF();
+            if (!policy.equals(scheduler.policy.getClass().getName())) {
+                throw new IOException("Checkpoint was taken with policy " + policy);
+            }
+            String settings = in.readUTF();
+            if (!settings.equals(scheduler.policy.settings())) {
+                throw new IOException("Checkpoint was taken with policy settings " + settings
+                        + ", not " + scheduler.policy.settings());
+            }
+            int time = in.readInt();
+            long inputOffset = in.readLong();
+            long outputOffset = in.readLong();
+            Processor[] processors = scheduler.processors;
+            int processorCount = in.readInt();
+            if (processorCount != processors.length) {
+                throw new IOException("Checkpoint was taken with " + processorCount + " processors");
+            }
+            int n = in.readInt();
+            int waitingCount = in.readInt();
+
+            RBNode[] jobs = new RBNode[n];
+            HeapNode[] waiting = new HeapNode[waitingCount];
+            for (int i = 0; i < n; i++) {
+                RBNode node = Scheduler.newJob(in.readInt(), 0);
+                node.heapNode.key = in.readInt();
+                node.totalTime = in.readInt();
+                node.heapNode.level = in.readByte();
+                int slot = in.readInt();
+                if (slot < 0) {
+                    processors[-1 - slot].currentJob = node.heapNode;
+                } else {
+                    waiting[slot] = node.heapNode;
+                }
+                jobs[i] = node;
+            }
+            for (Processor p : processors) {
+                p.currentSlotEndTime = in.readInt();
+                p.currentJobCompletionTime = in.readInt();
+            }
+            scheduler.restore(time, jobs, n, waiting, waitingCount);
+            return new Checkpoint(time, inputOffset, outputOffset);
+        } finally {
+            in.close();
+        }
+    }
+}
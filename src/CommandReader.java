@@ -0,0 +1,228 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming parser for scheduler input of the form "13: PrintJob(10,300)"
+ * Reads the file through a large buffer over a FileChannel and decodes every line
+ * byte by byte, so no objects are allocated per command.
+ * Decoded values of the current line are kept in public fields, overwritten by next()
+ * @author KUNWAR
+ */
+public class CommandReader implements Closeable {
+
+    //Command codes
+    public static final int INVALID = -1;//Line is not of form "time: Command(args)"
+    public static final int UNKNOWN = 0;//Well formed but unknown command name
+    public static final int INSERT = 1;
+    public static final int PRINT_JOB = 2;
+    public static final int NEXT_JOB = 3;
+    public static final int PREVIOUS_JOB = 4;
+    public static final int COUNT_JOBS = 5;
+    public static final int RANK_JOB = 6;
+    public static final int SELECT_JOB = 7;
+    public static final int INSERT_BATCH = 8;
+
+    private static final byte[][] NAMES = {
+            null,
+            "Insert".getBytes(),
+            "PrintJob".getBytes(),
+            "NextJob".getBytes(),
+            "PreviousJob".getBytes(),
+            "CountJobs".getBytes(),
+            "RankJob".getBytes(),
+            "SelectJob".getBytes(),
+            "InsertBatch".getBytes()
+    };
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int EOF = -1;
+
+    public int time;//Time at which command is to be executed
+    public int command;//One of the command codes above
+    public int[] params = new int[2];//Integer arguments, only first paramCount are valid
+    public int paramCount;
+
+    private final FileChannel channel;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+    private int pos = 0;//Next byte to be read from buf
+    private int limit = 0;//Number of valid bytes in buf
+    private long offset = 0;//Offset in file of buf[0]
+    private final byte[] name = new byte[32];//Scratch space for command name
+
+    public CommandReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Decodes next line of the file.
+     * Lines that cannot be decoded are still reported with command INVALID.
+     * @return false if end of file is reached
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        int c = read();
+        if (c == EOF) {
+            return false;
+        }
+        command = INVALID;
+        paramCount = 0;
+
+        //time
+        if (!isDigit(c)) {
+            return skipLine(c);
+        }
+        int value = 0;
+        while (isDigit(c)) {
+            value = value * 10 + (c - '0');
+            c = read();
+        }
+        time = value;
+
+        //": "
+        if (c != ':' || (c = read()) != ' ') {
+            return skipLine(c);
+        }
+
+        //Command name
+        int len = 0;
+        c = read();
+        while ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+            if (len < name.length) {
+                name[len] = (byte) c;
+            }
+            len++;
+            c = read();
+        }
+        if (len == 0 || c != '(') {
+            return skipLine(c);
+        }
+
+        //Comma separated integer arguments
+        do {
+            c = read();
+            boolean negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            if (!isDigit(c)) {
+                paramCount = 0;
+                return skipLine(c);
+            }
+            value = 0;
+            while (isDigit(c)) {
+                value = value * 10 + (c - '0');
+                c = read();
+            }
+            addParam(negative ? -value : value);
+        } while (c == ',');
+        if (c != ')') {
+            paramCount = 0;
+            return skipLine(c);
+        }
+
+        command = lookup(len);
+        return skipLine(read());
+    }
+
+    /**
+     * @return byte offset in file of the next line to be decoded
+     * @throws IOException
+     */
+    public long position() throws IOException {
+        return offset + pos;
+    }
+
+    /**
+     * Continue reading from given offset, which must be the start of a line
+     * @param offset as returned by position()
+     * @throws IOException
+     */
+    public void seek(long offset) throws IOException {
+        channel.position(offset);
+        this.offset = offset;
+        pos = 0;
+        limit = 0;
+    }
+
+    /**
+     * Finds command code of name scanned into scratch space
+     * @param len Length of name
+     * @return command code
+     */
+    private int lookup(int len) {
+        for (int code = 1; code < NAMES.length; code++) {
+            byte[] n = NAMES[code];
+            if (n.length != len) {
+                continue;
+            }
+            int i = 0;
+            while (i < len && n[i] == name[i]) {
+                i++;
+            }
+            if (i == len) {
+                return code;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private void addParam(int value) {
+        if (paramCount == params.length) {
+            int[] temp = new int[params.length * 2];
+            System.arraycopy(params, 0, temp, 0, params.length);
+            params = temp;
+        }
+        params[paramCount++] = value;
+    }
+
+    /**
+     * Consume rest of current line including the line terminator
+     * @param c Last byte read
+     * @return always true, as a line has been read
+     */
+    private boolean skipLine(int c) throws IOException {
+        while (c != '\n' && c != EOF) {
+            c = read();
+        }
+        return true;
+    }
+
+    /**
+     * Next byte from buffer, refilling it from the channel when exhausted.
+     * Carriage returns are dropped so that "\r\n" terminated files work too.
+     * @return byte value or EOF
+     * @throws IOException
+     */
+    private int read() throws IOException {
+        while (true) {
+            if (pos == limit) {
+                offset += limit;
+                pos = 0;
+                limit = 0;
+                byteBuffer.clear();
+                int n = channel.read(byteBuffer);
+                if (n <= 0) {
+                    return EOF;
+                }
+                limit = n;
+            }
+            byte b = buf[pos++];
+            if (b != '\r') {
+                return b;
+            }
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -6,6 +6,13 @@ public class HeapNode {
 
         public int key;//executed time
         public RBNode rbNode;//Object reference of Red-Black Node
+        public int index = -1;//Position in MinHeap array, -1 if not in heap
+        public int level = 0;//Queue level under MultilevelFeedbackPolicy
+        public HeapNode next;//Next job in same bucket of a BucketQueue
+        //Recorded by SchedulerMetrics, if enabled
+        public int arrivalTime;
+        public int firstDispatchTime = -1;
+        public int preemptions;
 
         //Constructor
         public HeapNode(int k){
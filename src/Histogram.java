@@ -0,0 +1,97 @@
+/**
+ * Histogram of non-negative values with bounded relative error, in the style of HdrHistogram.
+ * Values below 256 are counted exactly. Larger values share buckets of 128 sub-buckets per
+ * power of two, so any reported value is within 1% of the recorded one.
+ * Recording is a shift and an array increment, no allocation.
+ * @author KUNWAR
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;//128
+
+    private final long[] counts = new long[((63 - SUB_BITS) << SUB_BITS) + 2 * SUB_COUNT];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * @param value recorded as 0 if negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index
+     * @return largest value counted in bucket
+     */
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BITS) - 1;
+        long sub = index - (shift << SUB_BITS);
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return value below or at which given percent of recorded values lie
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return one line summary with count, min, mean, percentiles and max
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d min=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                count, min(), mean(), percentile(50), percentile(90), percentile(99), percentile(99.9), max);
+    }
+}
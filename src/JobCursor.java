@@ -0,0 +1,17 @@
+import java.util.Iterator;
+
+/**
+ * Range cursor over jobs in increasing jobID order that can be positioned again,
+ * so one cursor serves every range query of its caller without new allocations.
+ * @author KUNWAR
+ */
+public interface JobCursor extends Iterator<RBNode> {
+
+    /**
+     * Position cursor at the smallest key not less than low
+     * @param low
+     * @param high
+     * @return this cursor, over jobs with key in [low, high]
+     */
+    JobCursor reset(int low, int high);
+}
@@ -0,0 +1,100 @@
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Index of all jobs by jobID, as used by the Scheduler.
+ * Jobs are represented by their RBNode, which carries jobID, total time and the HeapNode
+ * holding executed time. Implementations that are not red-black trees only use it as a
+ * record and ignore its tree links.
+ * @author KUNWAR
+ */
+public interface JobIndex {
+
+    /**
+     * @param key JobID
+     * @return job, or null if not present
+     */
+    RBNode search(int key);
+
+    /**
+     * @param key
+     * @return job with greatest key less than parameter, or null
+     */
+    RBNode greatestLessThanKey(int key);
+
+    /**
+     * @param key
+     * @return job with smallest key greater than parameter, or null
+     */
+    RBNode smallestGreaterThanK(int key);
+
+    /**
+     * @param key1
+     * @param key2
+     * @return jobs with key in [key1, key2] in increasing order
+     */
+    List<RBNode> searchInRange(int key1, int key2);
+
+    /**
+     * Lazy alternative to searchInRange
+     * @param key1
+     * @param key2
+     * @return iterator over jobs with key in [key1, key2] in increasing order
+     */
+    Iterator<RBNode> rangeCursor(int key1, int key2);
+
+    /**
+     * Reusable alternative to rangeCursor, for callers that run many range queries
+     * @return cursor to be positioned with reset, which then returns the same jobs as rangeCursor
+     */
+    JobCursor newCursor();
+
+    /**
+     * @param key1
+     * @param key2
+     * @return number of jobs with key in [key1, key2]
+     */
+    int countInRange(int key1, int key2);
+
+    /**
+     * @param key
+     * @return number of jobs with key less than or equal to given key
+     */
+    int rank(int key);
+
+    /**
+     * @param k 1-based position
+     * @return job with k-th smallest key, or null
+     */
+    RBNode select(int k);
+
+    /**
+     * @return number of jobs
+     */
+    int size();
+
+    void insertNode(RBNode p);
+
+    /**
+     * @param nodes jobs with distinct keys, sorted in increasing key order
+     * @param n number of nodes in array to be inserted
+     */
+    void insertAll(RBNode[] nodes, int n);
+
+    /**
+     * @param p job in this index
+     * @return false if not present
+     */
+    boolean delete(RBNode p);
+
+    /**
+     * @param key
+     * @return false if not present
+     */
+    boolean delete(int key);
+
+    /**
+     * @return true if lookups may run concurrently with modifications without external locking
+     */
+    boolean isConcurrent();
+}
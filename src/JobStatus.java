@@ -0,0 +1,21 @@
+/**
+ * Immutable (jobID,executed_time,total_time) triplet returned by SchedulerService queries
+ * @author KUNWAR
+ */
+public class JobStatus {
+
+    public final int jobId;
+    public final int executedTime;
+    public final int totalTime;
+
+    public JobStatus(int jobId, int executedTime, int totalTime) {
+        this.jobId = jobId;
+        this.executedTime = executedTime;
+        this.totalTime = totalTime;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + jobId + "," + executedTime + "," + totalTime + ")";
+    }
+}
@@ -0,0 +1,749 @@
+/**
+ * Job storage engine keeping every job in parallel primitive arrays instead of
+ * RBNode/HeapNode objects. A job is identified by its slot index (handle).
+ * Offers the operations of RedBlackTree (keyed by jobID, with subtree sizes) and MinHeap (keyed by
+ * executed time) over the same slots. Freed slots are recycled through a free list.
+ * Slot 0 is the black nil sentinel, so 0 is returned wherever RedBlackTree returns null.
+ * @author KUNWAR
+ */
+public class JobStore implements SlotStore {
+
+    //Job fields, indexed by slot
+    private int[] jobId;
+    private int[] executedTime;
+    private int[] totalTime;
+    //Red-Black tree links, indexed by slot
+    private int[] left;//also links free slots together
+    private int[] right;
+    private int[] parent;
+    private long[] red;//color bits, set if red
+    private int[] size;//number of slots in subtree, 0 for NIL
+    //Min Heap
+    private int[] heapPos;//position of slot in heap, -1 if not in heap
+    private int[] heap;//slots ordered as a binary min heap on executedTime
+
+    private int root = NIL;
+    private int heapSize = 0;
+    private int treeSize = 0;
+    private int used = 1;//slots [0, used) have been handed out at least once
+    private int freeList = NIL;//head of recycled slots
+
+    public JobStore(){
+        this(16);
+    }
+
+    /**
+     * @param capacity Initial number of job slots
+     */
+    public JobStore(int capacity){
+        capacity = Math.max(capacity + 1, 2);
+        jobId = new int[capacity];
+        executedTime = new int[capacity];
+        totalTime = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        red = new long[(capacity + 63) >>> 6];
+        size = new int[capacity];
+        heapPos = new int[capacity];
+        heap = new int[capacity];
+        heapPos[NIL] = -1;
+    }
+
+    /**
+     * Allocate a slot for a new job, not yet in tree or heap
+     * @param id JobID
+     * @param total Total time of job
+     * @return slot of the job
+     */
+    public int allocate(int id, int total){
+        int s;
+        if (freeList != NIL){
+            s = freeList;
+            freeList = left[s];
+        }
+        else {
+            if (used == jobId.length){
+                grow();
+            }
+            s = used++;
+        }
+        jobId[s] = id;
+        executedTime[s] = 0;
+        totalTime[s] = total;
+        left[s] = NIL;
+        right[s] = NIL;
+        parent[s] = NIL;
+        heapPos[s] = -1;
+        return s;
+    }
+
+    /**
+     * Return a slot to the free list. Job must have been removed from tree and heap.
+     * @param s slot
+     */
+    public void free(int s){
+        left[s] = freeList;
+        freeList = s;
+    }
+
+    //Field accessors
+    public int jobId(int s){ return jobId[s]; }
+    public int executedTime(int s){ return executedTime[s]; }
+    public int totalTime(int s){ return totalTime[s]; }
+    public void setExecutedTime(int s, int executed){ executedTime[s] = executed; }
+    public int treeSize(){ return treeSize; }
+
+    /**
+     * Double every array
+     */
+    private void grow(){
+        int n = jobId.length * 2;
+        jobId = copy(jobId, n);
+        executedTime = copy(executedTime, n);
+        totalTime = copy(totalTime, n);
+        left = copy(left, n);
+        right = copy(right, n);
+        parent = copy(parent, n);
+        size = copy(size, n);
+        heapPos = copy(heapPos, n);
+        heap = copy(heap, n);
+        long[] temp = new long[(n + 63) >>> 6];
+        System.arraycopy(red, 0, temp, 0, red.length);
+        red = temp;
+    }
+
+    private static int[] copy(int[] a, int n){
+        int[] temp = new int[n];
+        System.arraycopy(a, 0, temp, 0, a.length);
+        return temp;
+    }
+
+    private boolean isRed(int s){
+        return (red[s >>> 6] & (1L << s)) != 0;
+    }
+
+    private void setRed(int s, boolean isRed){
+        if (isRed){
+            red[s >>> 6] |= 1L << s;
+        }
+        else {
+            red[s >>> 6] &= ~(1L << s);
+        }
+    }
+
+    /*-------------------------- Red-Black Tree --------------------------*/
+
+    /**
+     * Basic binary search
+     * @param key JobID
+     * @return slot of job or NIL
+     */
+    public int search(int key){
+        int x = root;
+        while (x != NIL && jobId[x] != key){
+            x = key < jobId[x] ? left[x] : right[x];
+        }
+        return x;
+    }
+
+    /**
+     * Returns slot with key greatest but less than parameter
+     * @param key
+     * @return slot or NIL
+     */
+    public int greatestLessThanKey(int key){
+        int n = NIL;
+        int x = root;
+        while (x != NIL){
+            if (jobId[x] >= key){
+                x = left[x];
+            }
+            else {
+                n = x;
+                x = right[x];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns slot with key smallest but greater than parameter
+     * @param key
+     * @return slot or NIL
+     */
+    public int smallestGreaterThanK(int key){
+        int n = NIL;
+        int x = root;
+        while (x != NIL){
+            if (jobId[x] <= key){
+                x = right[x];
+            }
+            else {
+                n = x;
+                x = left[x];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns slot with key smallest but not less than parameter, where a range walk starts
+     * @param key
+     * @return slot or NIL
+     */
+    public int ceiling(int key){
+        int n = NIL;
+        int x = root;
+        while (x != NIL){
+            if (jobId[x] < key){
+                x = right[x];
+            }
+            else {
+                n = x;
+                x = left[x];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * In-order successor of a slot in tree, used to walk a range without recursion:
+     * start at ceiling(low) and stop once jobId exceeds high
+     * @param x slot in tree
+     * @return next slot or NIL
+     */
+    public int successor(int x){
+        if (right[x] != NIL){
+            return getMin(right[x]);
+        }
+        int y = parent[x];
+        while (y != NIL && x == right[y]){
+            x = y;
+            y = parent[y];
+        }
+        return y;
+    }
+
+    /**
+     * Number of jobs with key in [key1, key2], stored into out from index 0 if it fits
+     * @param key1
+     * @param key2
+     * @param out Receives slots in increasing key order, may be shorter than result
+     * @return number of slots in range
+     */
+    public int searchInRange(int key1, int key2, int[] out){
+        int count = 0;
+        int x = ceiling(key1);
+        while (x != NIL && jobId[x] <= key2){
+            if (count < out.length){
+                out[count] = x;
+            }
+            count++;
+            x = successor(x);
+        }
+        return count;
+    }
+
+    /**
+     * Number of slots with key in [key1, key2], using subtree sizes
+     * @param key1
+     * @param key2
+     * @return
+     */
+    public int countInRange(int key1, int key2){
+        if (key1 > key2){
+            return 0;
+        }
+        return rank(key2) - countLess(key1);
+    }
+
+    /**
+     * Number of slots with key less than or equal to given key
+     * @param key
+     * @return
+     */
+    public int rank(int key){
+        int rank = 0;
+        int x = root;
+        while (x != NIL){
+            if (key < jobId[x]){
+                x = left[x];
+            }
+            else {
+                rank += size[left[x]] + 1;
+                x = right[x];
+            }
+        }
+        return rank;
+    }
+
+    private int countLess(int key){
+        int count = 0;
+        int x = root;
+        while (x != NIL){
+            if (key <= jobId[x]){
+                x = left[x];
+            }
+            else {
+                count += size[left[x]] + 1;
+                x = right[x];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the slot with k-th smallest key
+     * @param k 1-based position
+     * @return slot, or NIL if k is out of range
+     */
+    public int select(int k){
+        int x = root;
+        while (x != NIL){
+            int leftSize = size[left[x]];
+            if (k <= leftSize){
+                x = left[x];
+            }
+            else if (k == leftSize + 1){
+                return x;
+            }
+            else {
+                k -= leftSize + 1;
+                x = right[x];
+            }
+        }
+        return NIL;
+    }
+
+    private int getMin(int x){
+        if (x == NIL){
+            return NIL;
+        }
+        while (left[x] != NIL){
+            x = left[x];
+        }
+        return x;
+    }
+
+    private void leftRotate(int a){
+        int b = right[a];
+        right[a] = left[b];
+        if (left[b] != NIL){
+            parent[left[b]] = a;
+        }
+        parent[b] = parent[a];
+        if (parent[a] == NIL){
+            root = b;
+        }
+        else if (a == left[parent[a]]){
+            left[parent[a]] = b;
+        }
+        else {
+            right[parent[a]] = b;
+        }
+        left[b] = a;
+        parent[a] = b;
+        size[b] = size[a];
+        size[a] = size[left[a]] + size[right[a]] + 1;
+    }
+
+    private void rightRotate(int a){
+        int b = left[a];
+        left[a] = right[b];
+        if (right[b] != NIL){
+            parent[right[b]] = a;
+        }
+        parent[b] = parent[a];
+        if (parent[a] == NIL){
+            root = b;
+        }
+        else if (a == right[parent[a]]){
+            right[parent[a]] = b;
+        }
+        else {
+            left[parent[a]] = b;
+        }
+        right[b] = a;
+        parent[a] = b;
+        size[b] = size[a];
+        size[a] = size[left[a]] + size[right[a]] + 1;
+    }
+
+    /**
+     * Inserts slot into tree by its jobId
+     * @param p slot
+     */
+    public void insertNode(int p){
+        int key = jobId[p];
+        int y = NIL;
+        int x = root;
+        while (x != NIL){
+            y = x;
+            size[x]++;
+            x = key < jobId[x] ? left[x] : right[x];
+        }
+        parent[p] = y;
+        if (y == NIL){
+            root = p;
+        }
+        else if (key < jobId[y]){
+            left[y] = p;
+        }
+        else {
+            right[y] = p;
+        }
+        left[p] = NIL;
+        right[p] = NIL;
+        size[p] = 1;
+        setRed(p, true);
+        insertFix(p);
+        treeSize++;
+    }
+
+    /**
+     * Inserts a batch of slots with distinct keys, sorted in increasing key order.
+     * When the batch is large compared to the tree, existing slots are merged with
+     * the batch and the whole tree is rebuilt balanced in linear time, as in RedBlackTree.
+     * Otherwise slots are inserted one at a time.
+     * @param slots sorted slots
+     * @param n number of slots in array to be inserted
+     */
+    public void insertAll(int[] slots, int n){
+        int total = treeSize + n;
+        //One by one insertion costs about n*log(total), rebuild costs total
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(total)) < total){
+            for (int i = 0; i < n; i++){
+                insertNode(slots[i]);
+            }
+            return;
+        }
+
+        //Merge existing slots, walked in order, with the batch
+        int[] merged = new int[total];
+        int x = getMin(root);
+        int i = 0;
+        int k = 0;
+        while (x != NIL || i < n){
+            if (i == n || (x != NIL && jobId[x] < jobId[slots[i]])){
+                merged[k++] = x;
+                x = successor(x);
+            }
+            else {
+                merged[k++] = slots[i++];
+            }
+        }
+
+        //Slots on the deepest level of a balanced tree are red, rest are black
+        int height = 31 - Integer.numberOfLeadingZeros(total);
+        root = build(merged, 0, total - 1, 0, height, NIL);
+        treeSize = total;
+    }
+
+    /**
+     * Builds balanced subtree from sorted slots in [lo, hi] by picking the middle as root
+     * @return root of subtree
+     */
+    private int build(int[] slots, int lo, int hi, int depth, int height, int p){
+        if (lo > hi){
+            return NIL;
+        }
+        int mid = (lo + hi) >>> 1;
+        int s = slots[mid];
+        parent[s] = p;
+        left[s] = build(slots, lo, mid - 1, depth + 1, height, s);
+        right[s] = build(slots, mid + 1, hi, depth + 1, height, s);
+        size[s] = hi - lo + 1;
+        setRed(s, depth == height && depth > 0);
+        return s;
+    }
+
+    private void insertFix(int p){
+        while (isRed(parent[p])){
+            int pp = parent[p];
+            int gp = parent[pp];
+            if (pp == left[gp]){
+                int u = right[gp];
+                if (isRed(u)){
+                    setRed(pp, false);
+                    setRed(u, false);
+                    setRed(gp, true);
+                    p = gp;
+                }
+                else {
+                    if (p == right[pp]){
+                        p = pp;
+                        leftRotate(p);
+                        pp = parent[p];
+                    }
+                    setRed(pp, false);
+                    setRed(gp, true);
+                    rightRotate(gp);
+                }
+            }
+            else {
+                int u = left[gp];
+                if (isRed(u)){
+                    setRed(pp, false);
+                    setRed(u, false);
+                    setRed(gp, true);
+                    p = gp;
+                }
+                else {
+                    if (p == left[pp]){
+                        p = pp;
+                        rightRotate(p);
+                        pp = parent[p];
+                    }
+                    setRed(pp, false);
+                    setRed(gp, true);
+                    leftRotate(gp);
+                }
+            }
+        }
+        setRed(root, false);
+    }
+
+    /**
+     * Move b in place of a
+     */
+    private void levelUp(int a, int b){
+        if (parent[a] == NIL){
+            root = b;
+        }
+        else if (a == left[parent[a]]){
+            left[parent[a]] = b;
+        }
+        else {
+            right[parent[a]] = b;
+        }
+        parent[b] = parent[a];
+    }
+
+    /**
+     * Removes slot from tree. Slot is not freed.
+     * @param y slot in tree
+     */
+    public void delete(int y){
+        int v;
+        boolean origRed = isRed(y);
+        //Slot physically unlinked is y, or its successor if y has two children.
+        //All its ancestors lose one slot from their subtree
+        int removed = (left[y] == NIL || right[y] == NIL) ? y : getMin(right[y]);
+        for (int a = parent[removed]; a != NIL; a = parent[a]){
+            size[a]--;
+        }
+        if (left[y] == NIL){
+            v = right[y];
+            levelUp(y, right[y]);
+        }
+        else if (right[y] == NIL){
+            v = left[y];
+            levelUp(y, left[y]);
+        }
+        else {
+            int temp = getMin(right[y]);
+            origRed = isRed(temp);
+            v = right[temp];
+            if (parent[temp] == y){
+                parent[v] = temp;
+            }
+            else {
+                levelUp(temp, right[temp]);
+                right[temp] = right[y];
+                parent[right[temp]] = temp;
+            }
+            levelUp(y, temp);
+            left[temp] = left[y];
+            parent[left[temp]] = temp;
+            setRed(temp, isRed(y));
+            size[temp] = size[y];
+        }
+        if (!origRed){
+            deleteFix(v);
+        }
+        treeSize--;
+    }
+
+    private void deleteFix(int x){
+        while (x != root && !isRed(x)){
+            int px = parent[x];
+            if (x == left[px]){
+                int w = right[px];
+                if (isRed(w)){
+                    setRed(w, false);
+                    setRed(px, true);
+                    leftRotate(px);
+                    w = right[px];
+                }
+                if (!isRed(left[w]) && !isRed(right[w])){
+                    setRed(w, true);
+                    x = px;
+                }
+                else {
+                    if (!isRed(right[w])){
+                        setRed(left[w], false);
+                        setRed(w, true);
+                        rightRotate(w);
+                        w = right[px];
+                    }
+                    setRed(w, isRed(px));
+                    setRed(px, false);
+                    setRed(right[w], false);
+                    leftRotate(px);
+                    x = root;
+                }
+            }
+            else {
+                int w = left[px];
+                if (isRed(w)){
+                    setRed(w, false);
+                    setRed(px, true);
+                    rightRotate(px);
+                    w = left[px];
+                }
+                if (!isRed(left[w]) && !isRed(right[w])){
+                    setRed(w, true);
+                    x = px;
+                }
+                else {
+                    if (!isRed(left[w])){
+                        setRed(right[w], false);
+                        setRed(w, true);
+                        leftRotate(w);
+                        w = left[px];
+                    }
+                    setRed(w, isRed(px));
+                    setRed(px, false);
+                    setRed(left[w], false);
+                    rightRotate(px);
+                    x = root;
+                }
+            }
+        }
+        setRed(x, false);
+    }
+
+    /*----------------------------- Min Heap -----------------------------*/
+
+    public boolean heapIsEmpty(){
+        return heapSize == 0;
+    }
+
+    public int heapSize(){
+        return heapSize;
+    }
+
+    /**
+     * Insert slot into heap keyed by its executed time
+     * @param s slot
+     */
+    public void heapInsert(int s){
+        int i = heapSize++;
+        int key = executedTime[s];
+        while (i != 0){
+            int p = (i - 1) >>> 1;
+            if (executedTime[heap[p]] <= key){
+                break;
+            }
+            heapPlace(i, heap[p]);
+            i = p;
+        }
+        heapPlace(i, s);
+    }
+
+    /**
+     * Insert n slots at once. When the batch is large compared to the heap, slots are
+     * appended and the whole array is heapified bottom-up (Floyd) in linear time,
+     * otherwise they are inserted one at a time. Same rule and tie order as MinHeap.insertAll.
+     * @param slots
+     * @param n number of slots in array to be inserted
+     */
+    public void heapInsertAll(int[] slots, int n){
+        if (n == 0){
+            return;
+        }
+        int total = heapSize + n;
+        //One by one insertion costs about n*log(total), Floyd costs total
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(total)) < total){
+            for (int i = 0; i < n; i++){
+                heapInsert(slots[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < n; i++){
+            heapPlace(heapSize + i, slots[i]);
+        }
+        heapSize = total;
+        for (int i = (heapSize - 2) / 2; i >= 0; i--){
+            siftDown(i, heap[i]);
+        }
+    }
+
+    /**
+     * Removes slot with least executed time from heap
+     * @return slot, or NIL if heap is empty
+     */
+    public int extractMin(){
+        if (heapSize == 0){
+            return NIL;
+        }
+        int min = heap[0];
+        heapSize--;
+        if (heapSize > 0){
+            siftDown(0, heap[heapSize]);
+        }
+        heapPos[min] = -1;
+        return min;
+    }
+
+    /**
+     * Removes an arbitrary slot from heap
+     * @param s slot
+     * @return false if slot is not in heap
+     */
+    public boolean heapRemove(int s){
+        int i = heapPos[s];
+        if (i < 0){
+            return false;
+        }
+        heapPos[s] = -1;
+        heapSize--;
+        if (i < heapSize){
+            int last = heap[heapSize];
+            int key = executedTime[last];
+            while (i != 0 && executedTime[heap[(i - 1) >>> 1]] > key){
+                int p = (i - 1) >>> 1;
+                heapPlace(i, heap[p]);
+                i = p;
+            }
+            siftDown(i, last);
+        }
+        return true;
+    }
+
+    private void siftDown(int i, int s){
+        int key = executedTime[s];
+        while (true){
+            int l = 2*i + 1;
+            if (l >= heapSize){
+                break;
+            }
+            int c = l;
+            if (l + 1 < heapSize && executedTime[heap[l + 1]] < executedTime[heap[l]]){
+                c = l + 1;
+            }
+            if (executedTime[heap[c]] >= key){
+                break;
+            }
+            heapPlace(i, heap[c]);
+            i = c;
+        }
+        heapPlace(i, s);
+    }
+
+    private void heapPlace(int i, int s){
+        heap[i] = s;
+        heapPos[s] = i;
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * Original policy: dispatch the job with least executed time, for a fixed quantum.
+ * Backed by a MinHeap on executed time.
+ * @author KUNWAR
+ */
+public class LeastExecutedPolicy implements SchedulingPolicy {
+
+    public final MinHeap heap;
+    private final int quantum;
+
+    /**
+     * @param heapArity Number of children per Min Heap node
+     * @param quantum Time slice in ms
+     */
+    public LeastExecutedPolicy(int heapArity, int quantum) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be at least 1 ms: " + quantum);
+        }
+        this.heap = new MinHeap(heapArity);
+        this.quantum = quantum;
+    }
+
+    public void add(HeapNode job) {
+        heap.insert(job);
+    }
+
+    public void addAll(HeapNode[] jobs, int n) {
+        heap.insertAll(jobs, n);
+    }
+
+    public void requeue(HeapNode job) {
+        heap.insert(job);
+    }
+
+    public HeapNode next() {
+        return heap.isEmpty() ? null : heap.extractMin();
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    public int size() {
+        return heap.size;
+    }
+
+    public int quantum(HeapNode job) {
+        return quantum;
+    }
+
+    public String settings() {
+        return "heapArity=" + heap.arity() + ",quantum=" + quantum;
+    }
+
+    /**
+     * Heap array order, where index already is the position
+     */
+    public HeapNode[] waitingJobs() {
+        return Arrays.copyOf(heap.arr, heap.size);
+    }
+
+    /**
+     * Floyd heapify leaves a valid heap array as it is, so the heap is rebuilt exactly, in linear time
+     */
+    public void restore(HeapNode[] jobs, int n) {
+        heap.insertAll(jobs, n);
+    }
+}
@@ -0,0 +1,900 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Job storage engine with the operations of JobStore, keeping every job slot in a
+ * memory-mapped file instead of Java arrays. Job records live outside the Java heap, so
+ * the number of jobs is bounded by disk and address space rather than -Xmx, and the
+ * operating system pages cold records out. Reopening a file that was closed gives back
+ * all jobs, tree and heap as they were.
+ *
+ * File layout: a header (magic, root, sizes, free list head, clean flag), then one 40 byte
+ * record per slot: jobID, executed time, total time, left, right, parent (top bit set if red),
+ * subtree size, position in heap, the heap array entry at the slot's own index, and flags.
+ * Records are mapped in chunks of 2^20 slots, added as the store grows.
+ *
+ * The clean flag is cleared while the store is open and set by close. A crash in the middle
+ * of an operation can leave links half updated, so a file opened without the flag is
+ * recovered from the job fields alone: every record flagged live is kept, the tree is rebuilt
+ * from them sorted by jobID and all of them go back into the heap, including jobs that were
+ * running. Other slots go to the free list. Changes after the last sync may be lost.
+ * @author KUNWAR
+ */
+public class MappedJobStore implements SlotStore, Closeable {
+
+    private static final int MAGIC = 0x4A53544D;//"JSTM"
+    private static final int HEADER_SIZE = 64;
+    //Header offsets
+    private static final int H_MAGIC = 0;
+    private static final int H_ROOT = 4;
+    private static final int H_HEAP_SIZE = 8;
+    private static final int H_TREE_SIZE = 12;
+    private static final int H_USED = 16;
+    private static final int H_FREE_LIST = 20;
+    private static final int H_CLEAN = 24;
+    //Record layout
+    private static final int RECORD_SIZE = 40;
+    private static final int ID = 0;
+    private static final int EXECUTED = 4;
+    private static final int TOTAL = 8;
+    private static final int LEFT = 12;//also links free slots together
+    private static final int RIGHT = 16;
+    private static final int PARENT = 20;
+    private static final int SIZE = 24;
+    private static final int HEAP_POS = 28;
+    private static final int HEAP = 32;
+    private static final int FLAGS = 36;
+    private static final int RED = 1 << 31;
+    private static final int LIVE = 1;//flag of allocated slots
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final long CHUNK_BYTES = (long) RECORD_SIZE << CHUNK_BITS;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    //Copies of header fields
+    private int root;
+    private int heapSize;
+    private int treeSize;
+    private int used;//slots [0, used) have been handed out at least once
+    private int freeList;//head of recycled slots
+    private final boolean recovered;
+
+    /**
+     * Open store in file, or create an empty one if file is empty or missing.
+     * A store that was not closed is recovered.
+     * @param file
+     * @throws IOException if file exists but is not a job store
+     */
+    public MappedJobStore(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (created) {
+            header.putInt(H_MAGIC, MAGIC);
+            setRoot(NIL);
+            setHeapSize(0);
+            setTreeSize(0);
+            setUsed(1);
+            setFreeList(NIL);
+            ensureChunk(NIL);
+            putInt(NIL, PARENT, NIL);
+            putInt(NIL, SIZE, 0);
+            putInt(NIL, HEAP_POS, -1);
+            recovered = false;
+        }
+        else {
+            if (header.getInt(H_MAGIC) != MAGIC) {
+                channel.close();
+                throw new IOException(file + " is not a job store");
+            }
+            root = header.getInt(H_ROOT);
+            heapSize = header.getInt(H_HEAP_SIZE);
+            treeSize = header.getInt(H_TREE_SIZE);
+            used = header.getInt(H_USED);
+            freeList = header.getInt(H_FREE_LIST);
+            ensureChunk(used - 1);
+            recovered = header.getInt(H_CLEAN) != 1;
+            if (recovered) {
+                recover();
+            }
+        }
+        //Until close, a crash must be noticed on the next open
+        header.putInt(H_CLEAN, 0);
+        header.force();
+    }
+
+    /**
+     * @return true if the file had not been closed and was recovered when opened
+     */
+    public boolean wasRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Rebuild free list, tree and heap from the flags, jobIDs and executed times of records
+     */
+    private void recover() {
+        int[] live = new int[used];
+        long[] keys = new long[used];
+        int n = 0;
+        setFreeList(NIL);
+        for (int s = used - 1; s > NIL; s--) {
+            if ((getInt(s, FLAGS) & LIVE) != 0) {
+                putInt(s, HEAP_POS, -1);
+                //jobID in the high half, so sorting the longs sorts slots by jobID
+                keys[n] = ((long) key(s) << 32) | s;
+                live[n++] = s;
+            }
+            else {
+                setLeft(s, freeList);
+                setFreeList(s);
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = (int) keys[i];
+        }
+        setRoot(NIL);
+        setTreeSize(0);
+        setHeapSize(0);
+        insertAll(sorted, n);
+        heapInsertAll(live, n);
+    }
+
+    /*--------------------------- Record access ---------------------------*/
+
+    /**
+     * Map chunks up to the one holding slot s, extending the file
+     * @param s slot
+     */
+    private void ensureChunk(int s) throws IOException {
+        int needed = (s >>> CHUNK_BITS) + 1;
+        if (needed <= chunks.length) {
+            return;
+        }
+        MappedByteBuffer[] temp = new MappedByteBuffer[needed];
+        System.arraycopy(chunks, 0, temp, 0, chunks.length);
+        for (int i = chunks.length; i < needed; i++) {
+            temp[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * CHUNK_BYTES, CHUNK_BYTES);
+            temp[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        chunks = temp;
+    }
+
+    private int getInt(int s, int field) {
+        return chunks[s >>> CHUNK_BITS].getInt((s & CHUNK_MASK) * RECORD_SIZE + field);
+    }
+
+    private void putInt(int s, int field, int value) {
+        chunks[s >>> CHUNK_BITS].putInt((s & CHUNK_MASK) * RECORD_SIZE + field, value);
+    }
+
+    private int left(int s){ return getInt(s, LEFT); }
+    private int right(int s){ return getInt(s, RIGHT); }
+    private int parent(int s){ return getInt(s, PARENT) & ~RED; }
+    private int key(int s){ return getInt(s, ID); }
+    private void setLeft(int s, int x){ putInt(s, LEFT, x); }
+    private void setRight(int s, int x){ putInt(s, RIGHT, x); }
+    private int size(int s){ return getInt(s, SIZE); }
+    private void setSize(int s, int n){ putInt(s, SIZE, n); }
+
+    private void setParent(int s, int x){
+        putInt(s, PARENT, (getInt(s, PARENT) & RED) | x);
+    }
+
+    private boolean isRed(int s){
+        return (getInt(s, PARENT) & RED) != 0;
+    }
+
+    private void setRed(int s, boolean isRed){
+        int p = getInt(s, PARENT);
+        putInt(s, PARENT, isRed ? p | RED : p & ~RED);
+    }
+
+    //Header fields are written through, so the file always has current values
+    private void setRoot(int x){ root = x; header.putInt(H_ROOT, x); }
+    private void setHeapSize(int n){ heapSize = n; header.putInt(H_HEAP_SIZE, n); }
+    private void setTreeSize(int n){ treeSize = n; header.putInt(H_TREE_SIZE, n); }
+    private void setUsed(int n){ used = n; header.putInt(H_USED, n); }
+    private void setFreeList(int s){ freeList = s; header.putInt(H_FREE_LIST, s); }
+
+    /**
+     * Allocate a slot for a new job, not yet in tree or heap
+     * @param id JobID
+     * @param total Total time of job
+     * @return slot of the job
+     * @throws IOException if file cannot be extended
+     */
+    public int allocate(int id, int total) throws IOException {
+        int s;
+        if (freeList != NIL){
+            s = freeList;
+            setFreeList(left(s));
+        }
+        else {
+            s = used;
+            ensureChunk(s);
+            setUsed(used + 1);
+        }
+        putInt(s, ID, id);
+        putInt(s, EXECUTED, 0);
+        putInt(s, TOTAL, total);
+        putInt(s, LEFT, NIL);
+        putInt(s, RIGHT, NIL);
+        putInt(s, PARENT, NIL);
+        putInt(s, SIZE, 0);
+        putInt(s, HEAP_POS, -1);
+        putInt(s, FLAGS, LIVE);
+        return s;
+    }
+
+    /**
+     * Return a slot to the free list. Job must have been removed from tree and heap.
+     * @param s slot
+     */
+    public void free(int s){
+        putInt(s, FLAGS, 0);
+        setLeft(s, freeList);
+        setFreeList(s);
+    }
+
+    //Field accessors
+    public int jobId(int s){ return getInt(s, ID); }
+    public int executedTime(int s){ return getInt(s, EXECUTED); }
+    public int totalTime(int s){ return getInt(s, TOTAL); }
+    public void setExecutedTime(int s, int executed){ putInt(s, EXECUTED, executed); }
+    public int treeSize(){ return treeSize; }
+
+    /**
+     * Write all changes to disk. The store stays marked as not closed.
+     */
+    public void sync(){
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Write all changes to disk, then mark the store as closed cleanly
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+        header.putInt(H_CLEAN, 1);
+        header.force();
+        channel.close();
+    }
+
+    /*-------------------------- Red-Black Tree --------------------------*/
+
+    /**
+     * Basic binary search
+     * @param key JobID
+     * @return slot of job or NIL
+     */
+    public int search(int key){
+        int x = root;
+        while (x != NIL && key(x) != key){
+            x = key < key(x) ? left(x) : right(x);
+        }
+        return x;
+    }
+
+    /**
+     * Returns slot with key greatest but less than parameter
+     * @param key
+     * @return slot or NIL
+     */
+    public int greatestLessThanKey(int key){
+        int n = NIL;
+        int x = root;
+        while (x != NIL){
+            if (key(x) >= key){
+                x = left(x);
+            }
+            else {
+                n = x;
+                x = right(x);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns slot with key smallest but greater than parameter
+     * @param key
+     * @return slot or NIL
+     */
+    public int smallestGreaterThanK(int key){
+        int n = NIL;
+        int x = root;
+        while (x != NIL){
+            if (key(x) <= key){
+                x = right(x);
+            }
+            else {
+                n = x;
+                x = left(x);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns slot with key smallest but not less than parameter
+     * @param key
+     * @return slot or NIL
+     */
+    public int ceiling(int key){
+        int n = NIL;
+        int x = root;
+        while (x != NIL){
+            if (key(x) < key){
+                x = right(x);
+            }
+            else {
+                n = x;
+                x = left(x);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * In-order successor of a slot in tree
+     * @param x slot in tree
+     * @return next slot or NIL
+     */
+    public int successor(int x){
+        if (right(x) != NIL){
+            return getMin(right(x));
+        }
+        int y = parent(x);
+        while (y != NIL && x == right(y)){
+            x = y;
+            y = parent(y);
+        }
+        return y;
+    }
+
+    /**
+     * Number of jobs with key in [key1, key2], stored into out from index 0 if it fits
+     * @param key1
+     * @param key2
+     * @param out Receives slots in increasing key order, may be shorter than result
+     * @return number of slots in range
+     */
+    public int searchInRange(int key1, int key2, int[] out){
+        int count = 0;
+        int x = ceiling(key1);
+        while (x != NIL && key(x) <= key2){
+            if (count < out.length){
+                out[count] = x;
+            }
+            count++;
+            x = successor(x);
+        }
+        return count;
+    }
+
+    /**
+     * Number of slots with key in [key1, key2], using subtree sizes
+     * @param key1
+     * @param key2
+     * @return
+     */
+    public int countInRange(int key1, int key2){
+        if (key1 > key2){
+            return 0;
+        }
+        return rank(key2) - countLess(key1);
+    }
+
+    /**
+     * Number of slots with key less than or equal to given key
+     * @param key
+     * @return
+     */
+    public int rank(int key){
+        int rank = 0;
+        int x = root;
+        while (x != NIL){
+            if (key < key(x)){
+                x = left(x);
+            }
+            else {
+                rank += size(left(x)) + 1;
+                x = right(x);
+            }
+        }
+        return rank;
+    }
+
+    private int countLess(int key){
+        int count = 0;
+        int x = root;
+        while (x != NIL){
+            if (key <= key(x)){
+                x = left(x);
+            }
+            else {
+                count += size(left(x)) + 1;
+                x = right(x);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the slot with k-th smallest key
+     * @param k 1-based position
+     * @return slot, or NIL if k is out of range
+     */
+    public int select(int k){
+        int x = root;
+        while (x != NIL){
+            int leftSize = size(left(x));
+            if (k <= leftSize){
+                x = left(x);
+            }
+            else if (k == leftSize + 1){
+                return x;
+            }
+            else {
+                k -= leftSize + 1;
+                x = right(x);
+            }
+        }
+        return NIL;
+    }
+
+    private int getMin(int x){
+        if (x == NIL){
+            return NIL;
+        }
+        while (left(x) != NIL){
+            x = left(x);
+        }
+        return x;
+    }
+
+    private void leftRotate(int a){
+        int b = right(a);
+        setRight(a, left(b));
+        if (left(b) != NIL){
+            setParent(left(b), a);
+        }
+        setParent(b, parent(a));
+        if (parent(a) == NIL){
+            setRoot(b);
+        }
+        else if (a == left(parent(a))){
+            setLeft(parent(a), b);
+        }
+        else {
+            setRight(parent(a), b);
+        }
+        setLeft(b, a);
+        setParent(a, b);
+        setSize(b, size(a));
+        setSize(a, size(left(a)) + size(right(a)) + 1);
+    }
+
+    private void rightRotate(int a){
+        int b = left(a);
+        setLeft(a, right(b));
+        if (right(b) != NIL){
+            setParent(right(b), a);
+        }
+        setParent(b, parent(a));
+        if (parent(a) == NIL){
+            setRoot(b);
+        }
+        else if (a == right(parent(a))){
+            setRight(parent(a), b);
+        }
+        else {
+            setLeft(parent(a), b);
+        }
+        setRight(b, a);
+        setParent(a, b);
+        setSize(b, size(a));
+        setSize(a, size(left(a)) + size(right(a)) + 1);
+    }
+
+    /**
+     * Inserts slot into tree by its jobId
+     * @param p slot
+     */
+    public void insertNode(int p){
+        int key = key(p);
+        int y = NIL;
+        int x = root;
+        while (x != NIL){
+            y = x;
+            setSize(x, size(x) + 1);
+            x = key < key(x) ? left(x) : right(x);
+        }
+        setParent(p, y);
+        if (y == NIL){
+            setRoot(p);
+        }
+        else if (key < key(y)){
+            setLeft(y, p);
+        }
+        else {
+            setRight(y, p);
+        }
+        setLeft(p, NIL);
+        setRight(p, NIL);
+        setSize(p, 1);
+        setRed(p, true);
+        insertFix(p);
+        setTreeSize(treeSize + 1);
+    }
+
+    /**
+     * Inserts a batch of slots with distinct keys, sorted in increasing key order.
+     * Large batches merge with the existing slots and rebuild the tree balanced in linear time.
+     * @param slots sorted slots
+     * @param n number of slots in array to be inserted
+     */
+    public void insertAll(int[] slots, int n){
+        int total = treeSize + n;
+        //One by one insertion costs about n*log(total), rebuild costs total
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(total)) < total){
+            for (int i = 0; i < n; i++){
+                insertNode(slots[i]);
+            }
+            return;
+        }
+
+        //Merge existing slots, walked in order, with the batch
+        int[] merged = new int[total];
+        int x = getMin(root);
+        int i = 0;
+        int k = 0;
+        while (x != NIL || i < n){
+            if (i == n || (x != NIL && key(x) < key(slots[i]))){
+                merged[k++] = x;
+                x = successor(x);
+            }
+            else {
+                merged[k++] = slots[i++];
+            }
+        }
+
+        //Slots on the deepest level of a balanced tree are red, rest are black
+        int height = 31 - Integer.numberOfLeadingZeros(total);
+        setRoot(build(merged, 0, total - 1, 0, height, NIL));
+        setTreeSize(total);
+    }
+
+    /**
+     * Builds balanced subtree from sorted slots in [lo, hi] by picking the middle as root
+     * @return root of subtree
+     */
+    private int build(int[] slots, int lo, int hi, int depth, int height, int p){
+        if (lo > hi){
+            return NIL;
+        }
+        int mid = (lo + hi) >>> 1;
+        int s = slots[mid];
+        putInt(s, PARENT, (depth == height && depth > 0) ? p | RED : p);
+        setLeft(s, build(slots, lo, mid - 1, depth + 1, height, s));
+        setRight(s, build(slots, mid + 1, hi, depth + 1, height, s));
+        setSize(s, hi - lo + 1);
+        return s;
+    }
+
+    private void insertFix(int p){
+        while (isRed(parent(p))){
+            int pp = parent(p);
+            int gp = parent(pp);
+            if (pp == left(gp)){
+                int u = right(gp);
+                if (isRed(u)){
+                    setRed(pp, false);
+                    setRed(u, false);
+                    setRed(gp, true);
+                    p = gp;
+                }
+                else {
+                    if (p == right(pp)){
+                        p = pp;
+                        leftRotate(p);
+                        pp = parent(p);
+                    }
+                    setRed(pp, false);
+                    setRed(gp, true);
+                    rightRotate(gp);
+                }
+            }
+            else {
+                int u = left(gp);
+                if (isRed(u)){
+                    setRed(pp, false);
+                    setRed(u, false);
+                    setRed(gp, true);
+                    p = gp;
+                }
+                else {
+                    if (p == left(pp)){
+                        p = pp;
+                        rightRotate(p);
+                        pp = parent(p);
+                    }
+                    setRed(pp, false);
+                    setRed(gp, true);
+                    leftRotate(gp);
+                }
+            }
+        }
+        setRed(root, false);
+    }
+
+    /**
+     * Move b in place of a
+     */
+    private void levelUp(int a, int b){
+        if (parent(a) == NIL){
+            setRoot(b);
+        }
+        else if (a == left(parent(a))){
+            setLeft(parent(a), b);
+        }
+        else {
+            setRight(parent(a), b);
+        }
+        setParent(b, parent(a));
+    }
+
+    /**
+     * Removes slot from tree. Slot is not freed.
+     * @param y slot in tree
+     */
+    public void delete(int y){
+        int v;
+        boolean origRed = isRed(y);
+        //Slot physically unlinked is y, or its successor if y has two children.
+        //All its ancestors lose one slot from their subtree
+        int removed = (left(y) == NIL || right(y) == NIL) ? y : getMin(right(y));
+        for (int a = parent(removed); a != NIL; a = parent(a)){
+            setSize(a, size(a) - 1);
+        }
+        if (left(y) == NIL){
+            v = right(y);
+            levelUp(y, right(y));
+        }
+        else if (right(y) == NIL){
+            v = left(y);
+            levelUp(y, left(y));
+        }
+        else {
+            int temp = getMin(right(y));
+            origRed = isRed(temp);
+            v = right(temp);
+            if (parent(temp) == y){
+                setParent(v, temp);
+            }
+            else {
+                levelUp(temp, right(temp));
+                setRight(temp, right(y));
+                setParent(right(temp), temp);
+            }
+            levelUp(y, temp);
+            setLeft(temp, left(y));
+            setParent(left(temp), temp);
+            setRed(temp, isRed(y));
+            setSize(temp, size(y));
+        }
+        if (!origRed){
+            deleteFix(v);
+        }
+        setTreeSize(treeSize - 1);
+    }
+
+    private void deleteFix(int x){
+        while (x != root && !isRed(x)){
+            int px = parent(x);
+            if (x == left(px)){
+                int w = right(px);
+                if (isRed(w)){
+                    setRed(w, false);
+                    setRed(px, true);
+                    leftRotate(px);
+                    w = right(px);
+                }
+                if (!isRed(left(w)) && !isRed(right(w))){
+                    setRed(w, true);
+                    x = px;
+                }
+                else {
+                    if (!isRed(right(w))){
+                        setRed(left(w), false);
+                        setRed(w, true);
+                        rightRotate(w);
+                        w = right(px);
+                    }
+                    setRed(w, isRed(px));
+                    setRed(px, false);
+                    setRed(right(w), false);
+                    leftRotate(px);
+                    x = root;
+                }
+            }
+            else {
+                int w = left(px);
+                if (isRed(w)){
+                    setRed(w, false);
+                    setRed(px, true);
+                    rightRotate(px);
+                    w = left(px);
+                }
+                if (!isRed(left(w)) && !isRed(right(w))){
+                    setRed(w, true);
+                    x = px;
+                }
+                else {
+                    if (!isRed(left(w))){
+                        setRed(right(w), false);
+                        setRed(w, true);
+                        leftRotate(w);
+                        w = left(px);
+                    }
+                    setRed(w, isRed(px));
+                    setRed(px, false);
+                    setRed(left(w), false);
+                    rightRotate(px);
+                    x = root;
+                }
+            }
+        }
+        setRed(x, false);
+    }
+
+    /*----------------------------- Min Heap -----------------------------*/
+
+    public boolean heapIsEmpty(){
+        return heapSize == 0;
+    }
+
+    public int heapSize(){
+        return heapSize;
+    }
+
+    private int heapAt(int i){
+        return getInt(i, HEAP);
+    }
+
+    private int heapKey(int i){
+        return getInt(heapAt(i), EXECUTED);
+    }
+
+    /**
+     * Insert slot into heap keyed by its executed time
+     * @param s slot
+     */
+    public void heapInsert(int s){
+        int i = heapSize;
+        setHeapSize(heapSize + 1);
+        int key = executedTime(s);
+        while (i != 0){
+            int p = (i - 1) >>> 1;
+            if (heapKey(p) <= key){
+                break;
+            }
+            heapPlace(i, heapAt(p));
+            i = p;
+        }
+        heapPlace(i, s);
+    }
+
+    /**
+     * Insert n slots at once, heapifying bottom-up (Floyd) when the batch is large
+     * compared to the heap. Same rule and tie order as MinHeap.insertAll.
+     * @param slots
+     * @param n number of slots in array to be inserted
+     */
+    public void heapInsertAll(int[] slots, int n){
+        if (n == 0){
+            return;
+        }
+        int total = heapSize + n;
+        //One by one insertion costs about n*log(total), Floyd costs total
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(total)) < total){
+            for (int i = 0; i < n; i++){
+                heapInsert(slots[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < n; i++){
+            heapPlace(heapSize + i, slots[i]);
+        }
+        setHeapSize(total);
+        for (int i = (heapSize - 2) / 2; i >= 0; i--){
+            siftDown(i, heapAt(i));
+        }
+    }
+
+    /**
+     * Removes slot with least executed time from heap
+     * @return slot, or NIL if heap is empty
+     */
+    public int extractMin(){
+        if (heapSize == 0){
+            return NIL;
+        }
+        int min = heapAt(0);
+        setHeapSize(heapSize - 1);
+        if (heapSize > 0){
+            siftDown(0, heapAt(heapSize));
+        }
+        putInt(min, HEAP_POS, -1);
+        return min;
+    }
+
+    /**
+     * Removes an arbitrary slot from heap
+     * @param s slot
+     * @return false if slot is not in heap
+     */
+    public boolean heapRemove(int s){
+        int i = getInt(s, HEAP_POS);
+        if (i < 0){
+            return false;
+        }
+        putInt(s, HEAP_POS, -1);
+        setHeapSize(heapSize - 1);
+        if (i < heapSize){
+            int last = heapAt(heapSize);
+            int key = executedTime(last);
+            while (i != 0 && heapKey((i - 1) >>> 1) > key){
+                int p = (i - 1) >>> 1;
+                heapPlace(i, heapAt(p));
+                i = p;
+            }
+            siftDown(i, last);
+        }
+        return true;
+    }
+
+    private void siftDown(int i, int s){
+        int key = executedTime(s);
+        while (true){
+            int l = 2*i + 1;
+            if (l >= heapSize){
+                break;
+            }
+            int c = l;
+            if (l + 1 < heapSize && heapKey(l + 1) < heapKey(l)){
+                c = l + 1;
+            }
+            if (heapKey(c) >= key){
+                break;
+            }
+            heapPlace(i, heapAt(c));
+            i = c;
+        }
+        heapPlace(i, s);
+    }
+
+    private void heapPlace(int i, int s){
+        putInt(i, HEAP, s);
+        putInt(s, HEAP_POS, i);
+    }
+}
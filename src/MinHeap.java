@@ -1,11 +1,17 @@
 /**
  * MinHeap Implementation for scheduler
+ * Generalised to a d-ary heap (binary by default). Nodes with equal keys come out in an
+ * order that depends on d. Keys are mirrored in a parallel
+ * int array so that comparisons while percolating do not dereference HeapNodes.
+ * Nodes are ordered by executed time, subclasses may order by another priority.
  * @author KUNWAR
  */
 public class MinHeap {
 
     public int size = 0;//Holds current size of MinHeap
     public HeapNode[] arr;//Array of Nodes
+    private int[] keys;//keys[i] == priority(arr[i]) for all i < size
+    private final int d;//Number of children per node
 
     /**
      * Insert into heap, double if array full
@@ -20,6 +26,50 @@ public class MinHeap {
         insertUtil(p);
     }
 
+    /**
+     * Insert n nodes at once. When the batch is large compared to the heap, nodes are
+     * appended and the whole array is heapified bottom-up (Floyd) in linear time.
+     * Otherwise nodes are percolated up one at a time.
+     * @param nodes
+     * @param n number of nodes in array to be inserted
+     */
+    public void insertAll(HeapNode[] nodes, int n){
+        if (n == 0){
+            return;
+        }
+        int total = size + n;
+        ensureCapacity(total);
+        //One by one insertion costs about n*log(total), Floyd costs total
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(total)) < total){
+            for (int i = 0; i < n; i++){
+                insertUtil(nodes[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < n; i++){
+            place(size + i, nodes[i]);
+        }
+        size = total;
+        for (int i = getParentIndex(size - 1); i >= 0; i--){
+            heapify(i, arr[i]);
+        }
+    }
+
+    /**
+     * Grow array so that it can hold given number of nodes without doubling
+     * @param capacity
+     */
+    public void ensureCapacity(int capacity){
+        if (capacity > arr.length){
+            HeapNode[] temp = new HeapNode[capacity];
+            System.arraycopy(arr, 0, temp, 0, size);
+            arr = temp;
+            int[] tempKeys = new int[capacity];
+            System.arraycopy(keys, 0, tempKeys, 0, size);
+            keys = tempKeys;
+        }
+    }
+
     /**
      * Insert Node p into heap
      * if array full, double it
@@ -27,39 +77,63 @@ public class MinHeap {
      * @param p
      */
     private void insertUtil(HeapNode p) {
-        if (size > 0 && size == arr.length){
+        if (size == arr.length){
             arrDouble();
         }
         int i = size;
         size++;
-        arr[i] = p;
+        percolateUp(i, p);
+    }
 
-        //Percolate up. Find any parent greater than current node and swap
-        while (i != 0 && getParent(i).key > arr[i].key ){
-            swap(i, getParentIndex(i));
-            i = getParentIndex(i);
+    /**
+     * Percolate up: Move a hole from position i towards the root, shifting down
+     * every parent greater than p, then drop p into the hole
+     * @param i index of hole
+     * @param p Node to be placed
+     */
+    private void percolateUp(int i, HeapNode p){
+        int key = priority(p);
+        while (i != 0){
+            int parent = getParentIndex(i);
+            if (keys[parent] <= key){
+                break;
+            }
+            place(i, arr[parent]);
+            i = parent;
         }
+        place(i, p);
     }
 
     /**
-     * Percolate Down: Find any node greater than one of its child and swap
-     * @param i index
+     * Percolate Down: Move a hole from position i towards the leaves, shifting up
+     * the smallest child while it is smaller than p, then drop p into the hole
+     * @param i index of hole
+     * @param p Node to be placed
      */
-    private void heapify(int i){
-        int l = i*2 + 1;//left index
-        int r = i*2 + 2;//right index
-        //replace ith with smallest among left child and right child
-        int smallest = i;
-        if (l < size && arr[l].key < arr[i].key){
-            smallest = l;
-        }
-        if (r < size && arr[r].key < arr[smallest].key){
-            smallest = r;
-        }
-        if (smallest != i){
-            swap(i,smallest);
-            heapify(smallest);//recur if a swap occurs
+    private void heapify(int i, HeapNode p){
+        int key = priority(p);
+        while (true){
+            int first = d*i + 1;//first child index
+            if (first >= size){
+                break;
+            }
+            int last = Math.min(first + d, size);
+            //find smallest among children, leftmost on ties
+            int smallest = first;
+            int smallestKey = keys[first];
+            for (int c = first + 1; c < last; c++){
+                if (keys[c] < smallestKey){
+                    smallest = c;
+                    smallestKey = keys[c];
+                }
+            }
+            if (smallestKey >= key){
+                break;
+            }
+            place(i, arr[smallest]);
+            i = smallest;
         }
+        place(i, p);
     }
 
     /**
@@ -68,53 +142,143 @@ public class MinHeap {
      * @return Min
      */
     public HeapNode extractMin(){
-        if (size == 1){
-            HeapNode min = arr[0];
-            size--;
-            arr[0] = null;
-            return min;
-        }
-
         HeapNode min = arr[0];
-        arr[0] = arr[size-1];
+        HeapNode last = arr[size-1];
         arr[size-1] = null;
         size--;
-        heapify(0);
+        if (size > 0){
+            heapify(0, last);
+        }
 
+        min.index = -1;
         return min;
     }
 
-    private void swap(int i, int j) {
-        HeapNode temp = arr[i];
-        arr[i] = arr[j];
-        arr[j] = temp;
+    /**
+     * Removes an arbitrary node using its stored position.
+     * Last element takes its place and is percolated up or down as required
+     * @param p Node to be removed
+     * @return false if node is not in heap
+     */
+    public boolean remove(HeapNode p){
+        int i = p.index;
+        if (i < 0 || i >= size || arr[i] != p){
+            return false;
+        }
+        HeapNode last = arr[size-1];
+        arr[size-1] = null;
+        size--;
+        p.index = -1;
+        if (i < size){
+            if (i != 0 && keys[getParentIndex(i)] > priority(last)){
+                percolateUp(i, last);
+            }
+            else {
+                heapify(i, last);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lowers executed time of a node in heap and restores heap order
+     * @param p Node in heap
+     * @param key New key, not greater than current key
+     */
+    public void decreaseKey(HeapNode p, int key){
+        if (key > p.key){
+            throw new IllegalArgumentException("New key "+key+" is greater than current key "+p.key);
+        }
+        rekey(p, key);
+    }
+
+    /**
+     * Raises executed time of a node in heap and restores heap order
+     * @param p Node in heap
+     * @param key New key, not smaller than current key
+     */
+    public void increaseKey(HeapNode p, int key){
+        if (key < p.key){
+            throw new IllegalArgumentException("New key "+key+" is smaller than current key "+p.key);
+        }
+        rekey(p, key);
     }
 
-    private HeapNode getParent(int i){
-        return arr[getParentIndex(i)];
+    /**
+     * Set new key and move node towards root or leaves depending on how its priority changed
+     * @param p Node in heap
+     * @param key New key
+     */
+    private void rekey(HeapNode p, int key){
+        int old = keys[p.index];
+        p.key = key;
+        if (priority(p) < old){
+            percolateUp(p.index, p);
+        }
+        else {
+            heapify(p.index, p);
+        }
+    }
+
+    /**
+     * Store node at given position, keeping its stored position and key mirror in sync
+     * @param i
+     * @param p
+     */
+    private void place(int i, HeapNode p) {
+        arr[i] = p;
+        keys[i] = priority(p);
+        p.index = i;
+    }
+
+    /**
+     * Value by which nodes are ordered, smallest first. Must not change while node is in heap,
+     * other than through decreaseKey/increaseKey
+     * @param p
+     * @return executed time
+     */
+    protected int priority(HeapNode p){
+        return p.key;
     }
 
     private int getParentIndex(int i){
-        return (i - 1) / 2;
+        return (i - 1) / d;
     }
 
     /**
      * Create a new temp array of double current value and set reference to original array
      */
     private void arrDouble() {
-        HeapNode[] temp = new HeapNode[arr.length*2];
-        System.arraycopy(arr, 0, temp, 0, arr.length);
-        arr = temp;
+        ensureCapacity(Math.max(arr.length*2, 1));
     }
 
     public MinHeap(){
+        this(2);
+    }
+
+    /**
+     * @param d Number of children per node, e.g. 4 for a 4-ary heap
+     */
+    public MinHeap(int d){
+        if (d < 2){
+            throw new IllegalArgumentException("Heap arity must be at least 2: "+d);
+        }
+        this.d = d;
         arr = new HeapNode[1];
+        keys = new int[1];
     }
 
     public boolean isEmpty(){
         return size == 0;
     }
 
+    /**
+     * @return number of children per node
+     */
+    public int arity(){
+        return d;
+    }
+
     //Used for testing purposes only
     public static void main(String[] args) {
         /*MinHeap heap = new MinHeap();
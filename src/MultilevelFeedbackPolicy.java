@@ -0,0 +1,135 @@
+import java.util.ArrayDeque;
+
+/**
+ * Multilevel feedback queue. New jobs enter the top level. A job that uses its whole
+ * slice drops one level, where slices are twice as long. Jobs are dispatched first come
+ * first served from the highest non empty level. Every boostPeriod dispatches all jobs
+ * move back to the top level, so long jobs cannot starve.
+ * Backed by one FIFO queue per level.
+ * @author KUNWAR
+ */
+public class MultilevelFeedbackPolicy implements SchedulingPolicy {
+
+    private final ArrayDeque<HeapNode>[] queues;
+    private final int quantum;//Slice at top level
+    private final int boostPeriod;
+    private int size = 0;
+    private int dispatches = 0;
+
+    /**
+     * @param levels Number of queues
+     * @param quantum Time slice in ms at top level, doubled at every lower level
+     * @param boostPeriod Dispatches between moving all jobs to top level, 0 to never boost
+     */
+    public MultilevelFeedbackPolicy(int levels, int quantum, int boostPeriod) {
+        if (levels < 1 || levels > 31) {
+            throw new IllegalArgumentException("Number of levels must be in [1, 31]: " + levels);
+        }
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be at least 1 ms: " + quantum);
+        }
+        queues = newQueues(levels);
+        for (int i = 0; i < levels; i++) {
+            queues[i] = new ArrayDeque<HeapNode>();
+        }
+        this.quantum = quantum;
+        this.boostPeriod = boostPeriod;
+    }
+
+    /**
+     * Generic arrays cannot be created directly, the array only ever holds ArrayDeque<HeapNode>
+     * @param levels
+     * @return array of empty slots
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayDeque<HeapNode>[] newQueues(int levels) {
+        return (ArrayDeque<HeapNode>[]) new ArrayDeque[levels];
+    }
+
+    public void add(HeapNode job) {
+        job.level = 0;
+        queues[0].addLast(job);
+        size++;
+    }
+
+    public void addAll(HeapNode[] jobs, int n) {
+        for (int i = 0; i < n; i++) {
+            add(jobs[i]);
+        }
+    }
+
+    public void requeue(HeapNode job) {
+        job.level = Math.min(job.level + 1, queues.length - 1);
+        queues[job.level].addLast(job);
+        size++;
+    }
+
+    public HeapNode next() {
+        if (boostPeriod > 0 && ++dispatches % boostPeriod == 0) {
+            boost();
+        }
+        for (ArrayDeque<HeapNode> queue : queues) {
+            if (!queue.isEmpty()) {
+                size--;
+                return queue.pollFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Move every job to the end of top level queue, keeping order within levels
+     */
+    private void boost() {
+        for (int i = 1; i < queues.length; i++) {
+            HeapNode job;
+            while ((job = queues[i].pollFirst()) != null) {
+                job.level = 0;
+                queues[0].addLast(job);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int quantum(HeapNode job) {
+        return quantum << job.level;
+    }
+
+    public String settings() {
+        return "levels=" + queues.length + ",quantum=" + quantum + ",boostPeriod=" + boostPeriod;
+    }
+
+    /**
+     * Queues from top level down, each first come first served
+     */
+    public HeapNode[] waitingJobs() {
+        HeapNode[] jobs = new HeapNode[size];
+        int i = 0;
+        for (ArrayDeque<HeapNode> queue : queues) {
+            for (HeapNode job : queue) {
+                job.index = i;
+                jobs[i++] = job;
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Jobs go back to the queue of their level. The count towards next boost restarts.
+     */
+    public void restore(HeapNode[] jobs, int n) {
+        for (int i = 0; i < n; i++) {
+            HeapNode job = jobs[i];
+            job.index = -1;
+            queues[Math.min(job.level, queues.length - 1)].addLast(job);
+        }
+        size += n;
+    }
+}
@@ -0,0 +1,329 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered writer for scheduler output.
+ * Triplets are formatted straight into a reusable byte buffer, which is written
+ * to the FileChannel only when full, so no Strings are created per printed job.
+ * An in-memory sink has no file and grows its buffer instead, so output can be
+ * formatted on other threads and appended to a file sink later with writeSink.
+ * After startWriter, full buffers are passed to a writer thread through a SpscRing
+ * and formatting carries on in the next free buffer while they are written.
+ * @author KUNWAR
+ */
+public class OutputSink implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] EMPTY = "(0,0,0)\n".getBytes();
+    private static final byte[] MIN_INT = Integer.toString(Integer.MIN_VALUE).getBytes();
+
+    private final FileChannel channel;//null for in-memory sink
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+    private int pos = 0;//Next free position in buf
+    //Set by startWriter
+    private SpscRing<ByteBuffer> chunks = null;//Buffers between this and writer thread, buf is the one claimed
+    private long handedOff;//Offset in file after the last buffer passed to writer
+    private Thread writer;
+    private volatile IOException writeError = null;
+
+    /**
+     * In-memory sink, output is kept until appended to another sink
+     */
+    public OutputSink() {
+        channel = null;
+    }
+
+    public OutputSink(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Continue an existing output file, dropping anything written after offset
+     * @param fileName
+     * @param offset Length of output to keep, as given by position()
+     * @throws IOException if file is shorter than offset
+     */
+    public OutputSink(String fileName, long offset) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < offset) {
+            channel.close();
+            throw new IOException("Output file " + fileName + " is shorter than " + offset + " bytes");
+        }
+        channel.truncate(offset);
+        channel.position(offset);
+    }
+
+    /**
+     * @return number of bytes of output so far, including those still buffered
+     * @throws IOException
+     */
+    public long position() throws IOException {
+        if (channel == null) {
+            return pos;
+        }
+        return chunks != null ? handedOff + pos : channel.position() + pos;
+    }
+
+    /**
+     * Write to file on a thread of its own from now on. Not for in-memory sinks.
+     * @param buffers Buffers of output that may wait to be written, a power of two
+     * @throws IOException
+     */
+    public void startWriter(int buffers) throws IOException {
+        if (channel == null || chunks != null) {
+            throw new IllegalStateException("Writer thread needs a file and is started once");
+        }
+        ByteBuffer[] slots = new ByteBuffer[buffers];
+        for (int i = 0; i < buffers; i++) {
+            slots[i] = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        flush();
+        handedOff = channel.position();
+        chunks = new SpscRing<ByteBuffer>(slots);
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeChunks();
+            }
+        }, "writer");
+        writer.setDaemon(true);
+        writer.start();
+        nextChunk();
+    }
+
+    /**
+     * Writer thread: write buffers in the order they are passed
+     */
+    private void writeChunks() {
+        try {
+            ByteBuffer chunk;
+            while ((chunk = chunks.take()) != null) {
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                chunks.release();
+            }
+        } catch (IOException e) {
+            writeError = e;
+            chunks.close();
+        }
+    }
+
+    /**
+     * Pass current buffer to writer thread and continue in a free one
+     * @throws IOException if writer has failed
+     */
+    private void handOff() throws IOException {
+        if (pos == 0) {
+            return;
+        }
+        byteBuffer.clear();
+        byteBuffer.limit(pos);
+        chunks.publish();
+        handedOff += pos;
+        nextChunk();
+    }
+
+    private void nextChunk() throws IOException {
+        ByteBuffer chunk = chunks.claim();
+        if (chunk == null) {
+            throw writeError != null ? writeError : new IOException("Writer thread has stopped");
+        }
+        byteBuffer = chunk;
+        buf = chunk.array();
+        pos = 0;
+    }
+
+    /**
+     * Appends "(jobId,executedTime,totalTime)" without line end
+     * @param jobId
+     * @param executedTime
+     * @param totalTime
+     * @throws IOException
+     */
+    public void writeJob(int jobId, int executedTime, int totalTime) throws IOException {
+        //Worst case: 3 ints of 11 chars, 2 commas and brackets
+        ensureSpace(37);
+        buf[pos++] = '(';
+        putInt(jobId);
+        buf[pos++] = ',';
+        putInt(executedTime);
+        buf[pos++] = ',';
+        putInt(totalTime);
+        buf[pos++] = ')';
+    }
+
+    /**
+     * Appends "(0,0,0)" followed by line end
+     * @throws IOException
+     */
+    public void writeEmpty() throws IOException {
+        ensureSpace(EMPTY.length);
+        System.arraycopy(EMPTY, 0, buf, pos, EMPTY.length);
+        pos += EMPTY.length;
+    }
+
+    /**
+     * Appends bytes as they are, e.g. a pre-encoded command name
+     * @param bytes at most the buffer size
+     * @throws IOException
+     */
+    public void writeBytes(byte[] bytes) throws IOException {
+        ensureSpace(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    /**
+     * Appends all output of an in-memory sink, in order, and empties it
+     * @param other In-memory sink
+     * @throws IOException
+     */
+    public void writeSink(OutputSink other) throws IOException {
+        if (channel != null && chunks == null && other.pos > BUFFER_SIZE - pos) {
+            //Too large to copy, write straight from the other buffer
+            flush();
+            ByteBuffer bytes = ByteBuffer.wrap(other.buf, 0, other.pos);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        else {
+            //Copy as much as fits, then make room for the rest
+            int off = 0;
+            while (off < other.pos) {
+                if (pos == buf.length) {
+                    ensureSpace(1);
+                }
+                int len = Math.min(other.pos - off, buf.length - pos);
+                System.arraycopy(other.buf, off, buf, pos, len);
+                pos += len;
+                off += len;
+            }
+        }
+        other.pos = 0;
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureSpace(11);
+        putInt(value);
+    }
+
+    public void writeComma() throws IOException {
+        ensureSpace(1);
+        buf[pos++] = ',';
+    }
+
+    public void writeNewLine() throws IOException {
+        ensureSpace(1);
+        buf[pos++] = '\n';
+    }
+
+    /**
+     * Formats value in decimal at current position. Caller makes sure there is space.
+     * @param value
+     */
+    private void putInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            System.arraycopy(MIN_INT, 0, buf, pos, MIN_INT.length);
+            pos += MIN_INT.length;
+            return;
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        //Count digits, then fill them from the right
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int i = pos + digits;
+        pos = i;
+        do {
+            buf[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void ensureSpace(int n) throws IOException {
+        if (buf.length - pos < n) {
+            if (channel == null) {
+                grow(n);
+            }
+            else if (chunks != null) {
+                handOff();
+            }
+            else {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Double in-memory buffer until n more bytes fit
+     * @param n
+     */
+    private void grow(int n) {
+        int size = buf.length;
+        while (size - pos < n) {
+            size *= 2;
+        }
+        byte[] temp = new byte[size];
+        System.arraycopy(buf, 0, temp, 0, pos);
+        buf = temp;
+        byteBuffer = ByteBuffer.wrap(buf);
+    }
+
+    /**
+     * Write buffered bytes to file, with a writer thread wait until it has written them
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (channel == null) {
+            return;//Nothing to write to, output stays buffered
+        }
+        if (chunks != null) {
+            handOff();
+            chunks.awaitEmpty();
+            if (writeError != null) {
+                throw writeError;
+            }
+            return;
+        }
+        byteBuffer.clear();
+        byteBuffer.limit(pos);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        pos = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (chunks != null) {
+            try {
+                handOff();
+            } finally {
+                chunks.close();//Writer stops once it has written every buffer passed
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (writeError != null) {
+                channel.close();
+                throw writeError;
+            }
+        }
+        flush();
+        if (channel != null) channel.close();
+    }
+}
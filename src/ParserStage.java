@@ -0,0 +1,99 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * First stage of a pipelined replay: a thread of its own decodes input lines with a
+ * CommandReader and passes them to the scheduler through a SpscRing of Command slots,
+ * so reading and parsing overlap with scheduling.
+ * @author KUNWAR
+ */
+public class ParserStage implements Runnable, Closeable {
+
+    /**
+     * A decoded line, as left in the public fields of CommandReader
+     */
+    public static class Command {
+        public int time;
+        public int command;
+        public int[] params = new int[2];
+        public int paramCount;
+        public long position;//Offset of the line after this one
+    }
+
+    public final SpscRing<Command> commands;
+    private final CommandReader reader;
+    private final Thread thread;
+    private volatile IOException error = null;
+
+    /**
+     * @param reader Reader positioned at the first line to replay, used only by the parser thread from now on
+     * @param capacity Decoded lines buffered at most, a power of two
+     */
+    public ParserStage(CommandReader reader, int capacity) {
+        this.reader = reader;
+        Command[] slots = new Command[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Command();
+        }
+        commands = new SpscRing<Command>(slots);
+        thread = new Thread(this, "parser");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (reader.next()) {
+                Command c = commands.claim();
+                if (c == null) {
+                    return;//Scheduler stopped
+                }
+                c.time = reader.time;
+                c.command = reader.command;
+                c.paramCount = reader.paramCount;
+                if (c.params.length < reader.paramCount) {
+                    c.params = new int[reader.params.length];
+                }
+                System.arraycopy(reader.params, 0, c.params, 0, reader.paramCount);
+                c.position = reader.position();
+                commands.publish();
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            commands.close();
+        }
+    }
+
+    /**
+     * Call once commands is drained
+     * @throws IOException if input could not be read
+     */
+    public void checkError() throws IOException {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Stops the parser thread, the reader is left to its owner
+     */
+    @Override
+    public void close() {
+        commands.close();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
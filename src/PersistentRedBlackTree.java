@@ -0,0 +1,506 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Persistent (copy-on-write) Red-Black tree of jobs. Tree nodes are immutable: insert and
+ * delete copy only the path from the root to the change, O(log n) nodes, and publish the
+ * new root through a volatile field. Every lookup reads the root once and works on that
+ * version, so a long range scan sees the tree exactly as it was when it started, without
+ * locks, while the writer carries on. snapshot() freezes the current version in O(1).
+ *
+ * Insert rebalances as in Okasaki, delete follows Kahrs. Nodes keep subtree sizes for rank
+ * and select. A single writer at a time is assumed, readers need no synchronisation.
+ * Executed time is read from the shared HeapNode of a job, so it is always the live value.
+ * @author KUNWAR
+ */
+public class PersistentRedBlackTree implements JobIndex {
+
+    /**
+     * Immutable tree node, shared between versions. null is the empty (black) tree.
+     */
+    private static final class Node {
+        final RBNode job;
+        final Node left;
+        final Node right;
+        final boolean red;
+        final int size;//Number of jobs in subtree
+
+        Node(boolean red, Node left, RBNode job, Node right) {
+            this.red = red;
+            this.left = left;
+            this.job = job;
+            this.right = right;
+            this.size = size(left) + 1 + size(right);
+        }
+
+        int key() {
+            return job.key;
+        }
+    }
+
+    private static final int MAX_HEIGHT = 64;//Height of a red-black tree of 2^31 nodes is below 62
+
+    private volatile Node root;
+
+    public PersistentRedBlackTree() {
+        this(null);
+    }
+
+    private PersistentRedBlackTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @return tree holding the current version. Later changes to either tree do not affect the other.
+     */
+    public PersistentRedBlackTree snapshot() {
+        return new PersistentRedBlackTree(root);
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static boolean isRed(Node n) {
+        return n != null && n.red;
+    }
+
+    private static boolean isBlack(Node n) {
+        return n != null && !n.red;
+    }
+
+    private static Node black(Node l, RBNode x, Node r) {
+        return new Node(false, l, x, r);
+    }
+
+    private static Node red(Node l, RBNode x, Node r) {
+        return new Node(true, l, x, r);
+    }
+
+    private static Node blacken(Node n) {
+        return n.red ? black(n.left, n.job, n.right) : n;
+    }
+
+    /*------------------------------ Lookups ------------------------------*/
+
+    @Override
+    public RBNode search(int key) {
+        Node n = root;
+        while (n != null && n.key() != key) {
+            n = key < n.key() ? n.left : n.right;
+        }
+        return n == null ? null : n.job;
+    }
+
+    @Override
+    public RBNode greatestLessThanKey(int key) {
+        RBNode result = null;
+        Node n = root;
+        while (n != null) {
+            if (n.key() >= key) {
+                n = n.left;
+            }
+            else {
+                result = n.job;
+                n = n.right;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public RBNode smallestGreaterThanK(int key) {
+        RBNode result = null;
+        Node n = root;
+        while (n != null) {
+            if (n.key() <= key) {
+                n = n.right;
+            }
+            else {
+                result = n.job;
+                n = n.left;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<RBNode> searchInRange(int key1, int key2) {
+        List<RBNode> list = new ArrayList<RBNode>();
+        Iterator<RBNode> cursor = rangeCursor(key1, key2);
+        while (cursor.hasNext()) {
+            list.add(cursor.next());
+        }
+        return list;
+    }
+
+    /**
+     * Cursor over the version current when it is created
+     */
+    @Override
+    public Iterator<RBNode> rangeCursor(int key1, int key2) {
+        return newCursor().reset(key1, key2);
+    }
+
+    /**
+     * Each reset moves the cursor to the version current at that time
+     */
+    @Override
+    public JobCursor newCursor() {
+        return new Cursor(this);
+    }
+
+    @Override
+    public int countInRange(int key1, int key2) {
+        if (key1 > key2) {
+            return 0;
+        }
+        Node n = root;
+        return countLessOrEqual(n, key2) - countLessOrEqual(n, key1) + (contains(n, key1) ? 1 : 0);
+    }
+
+    @Override
+    public int rank(int key) {
+        return countLessOrEqual(root, key);
+    }
+
+    private static int countLessOrEqual(Node n, int key) {
+        int count = 0;
+        while (n != null) {
+            if (n.key() <= key) {
+                count += size(n.left) + 1;
+                n = n.right;
+            }
+            else {
+                n = n.left;
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(Node n, int key) {
+        while (n != null && n.key() != key) {
+            n = key < n.key() ? n.left : n.right;
+        }
+        return n != null;
+    }
+
+    @Override
+    public RBNode select(int k) {
+        Node n = root;
+        if (k < 1 || k > size(n)) {
+            return null;
+        }
+        while (true) {
+            int leftSize = size(n.left);
+            if (k <= leftSize) {
+                n = n.left;
+            }
+            else if (k == leftSize + 1) {
+                return n.job;
+            }
+            else {
+                k -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @return number of black nodes on every path from root to a leaf
+     */
+    public int blackHeight() {
+        int height = 0;
+        for (Node n = root; n != null; n = n.left) {
+            if (!n.red) height++;
+        }
+        return height;
+    }
+
+    /**
+     * Readers never block and always see a consistent version
+     */
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    /*------------------------------ Insert ------------------------------*/
+
+    /**
+     * Insert job, replacing any job with the same jobID
+     * @param p
+     */
+    @Override
+    public void insertNode(RBNode p) {
+        root = blacken(insert(root, p));
+    }
+
+    private static Node insert(Node n, RBNode x) {
+        if (n == null) {
+            return red(null, x, null);
+        }
+        if (x.key < n.key()) {
+            return n.red ? red(insert(n.left, x), n.job, n.right) : balance(insert(n.left, x), n.job, n.right);
+        }
+        if (x.key > n.key()) {
+            return n.red ? red(n.left, n.job, insert(n.right, x)) : balance(n.left, n.job, insert(n.right, x));
+        }
+        return new Node(n.red, n.left, x, n.right);
+    }
+
+    /**
+     * Black node with children a, b, resolving a red child with a red child of its own
+     * into a red node with two black children
+     */
+    private static Node balance(Node a, RBNode x, Node b) {
+        if (isRed(a) && isRed(b)) {
+            return red(blacken(a), x, blacken(b));
+        }
+        if (isRed(a)) {
+            if (isRed(a.left)) {
+                return red(blacken(a.left), a.job, black(a.right, x, b));
+            }
+            if (isRed(a.right)) {
+                return red(black(a.left, a.job, a.right.left), a.right.job, black(a.right.right, x, b));
+            }
+        }
+        if (isRed(b)) {
+            if (isRed(b.right)) {
+                return red(black(a, x, b.left), b.job, blacken(b.right));
+            }
+            if (isRed(b.left)) {
+                return red(black(a, x, b.left.left), b.left.job, black(b.left.right, b.job, b.right));
+            }
+        }
+        return black(a, x, b);
+    }
+
+    /**
+     * Large batches are merged with the current jobs and built into a balanced tree in linear
+     * time, small ones inserted one by one. Either way the batch is published as one version.
+     */
+    @Override
+    public void insertAll(RBNode[] nodes, int n) {
+        Node current = root;
+        int existing = size(current);
+        int total = existing + n;
+        //One by one insertion costs about n*log(total), rebuild costs total
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(total)) < total) {
+            for (int i = 0; i < n; i++) {
+                current = blacken(insert(current, nodes[i]));
+            }
+            root = current;
+            return;
+        }
+
+        //Merge existing jobs, walked in order, with the batch
+        RBNode[] merged = new RBNode[total];
+        Cursor cursor = new Cursor(this).reset(current, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        RBNode job = cursor.hasNext() ? cursor.next() : null;
+        int i = 0;
+        int k = 0;
+        while (job != null || i < n) {
+            if (i == n || (job != null && job.key < nodes[i].key)) {
+                merged[k++] = job;
+                job = cursor.hasNext() ? cursor.next() : null;
+            }
+            else {
+                merged[k++] = nodes[i++];
+            }
+        }
+
+        //Nodes on the deepest level of a balanced tree are red, rest are black
+        int height = 31 - Integer.numberOfLeadingZeros(total);
+        root = build(merged, 0, k - 1, 0, height);
+    }
+
+    private static Node build(RBNode[] jobs, int lo, int hi, int depth, int height) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        Node left = build(jobs, lo, mid - 1, depth + 1, height);
+        Node right = build(jobs, mid + 1, hi, depth + 1, height);
+        return new Node(depth == height && depth > 0, left, jobs[mid], right);
+    }
+
+    /*------------------------------ Delete ------------------------------*/
+
+    @Override
+    public boolean delete(RBNode p) {
+        return delete(p.key);
+    }
+
+    @Override
+    public boolean delete(int key) {
+        Node current = root;
+        if (!contains(current, key)) {
+            return false;
+        }
+        Node n = delete(current, key);
+        root = n == null ? null : blacken(n);
+        return true;
+    }
+
+    /**
+     * Remove key, present in subtree. Result of deleting from a black node has black height
+     * one less, and may be red with a red child at the top, fixed by the caller.
+     */
+    private static Node delete(Node n, int key) {
+        if (key < n.key()) {
+            if (isBlack(n.left)) {
+                return balanceLeft(delete(n.left, key), n.job, n.right);
+            }
+            return red(delete(n.left, key), n.job, n.right);
+        }
+        if (key > n.key()) {
+            if (isBlack(n.right)) {
+                return balanceRight(n.left, n.job, delete(n.right, key));
+            }
+            return red(n.left, n.job, delete(n.right, key));
+        }
+        return append(n.left, n.right);
+    }
+
+    /**
+     * Left subtree l has black height one less than right subtree r
+     */
+    private static Node balanceLeft(Node l, RBNode x, Node r) {
+        if (isRed(l)) {
+            return red(blacken(l), x, r);
+        }
+        if (isBlack(r)) {
+            return balance(l, x, red(r.left, r.job, r.right));
+        }
+        if (isRed(r) && isBlack(r.left)) {
+            return red(black(l, x, r.left.left), r.left.job, balance(r.left.right, r.job, redden(r.right)));
+        }
+        throw new IllegalStateException("Red-Black invariant violated");
+    }
+
+    /**
+     * Right subtree r has black height one less than left subtree l
+     */
+    private static Node balanceRight(Node l, RBNode x, Node r) {
+        if (isRed(r)) {
+            return red(l, x, blacken(r));
+        }
+        if (isBlack(l)) {
+            return balance(red(l.left, l.job, l.right), x, r);
+        }
+        if (isRed(l) && isBlack(l.right)) {
+            return red(balance(redden(l.left), l.job, l.right.left), l.right.job, black(l.right.right, x, r));
+        }
+        throw new IllegalStateException("Red-Black invariant violated");
+    }
+
+    private static Node redden(Node n) {
+        if (!isBlack(n)) {
+            throw new IllegalStateException("Red-Black invariant violated");
+        }
+        return red(n.left, n.job, n.right);
+    }
+
+    /**
+     * Join two subtrees of equal black height, all keys of a less than those of b
+     */
+    private static Node append(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.red && b.red) {
+            Node bc = append(a.right, b.left);
+            if (isRed(bc)) {
+                return red(red(a.left, a.job, bc.left), bc.job, red(bc.right, b.job, b.right));
+            }
+            return red(a.left, a.job, red(bc, b.job, b.right));
+        }
+        if (!a.red && !b.red) {
+            Node bc = append(a.right, b.left);
+            if (isRed(bc)) {
+                return red(black(a.left, a.job, bc.left), bc.job, black(bc.right, b.job, b.right));
+            }
+            return balanceLeft(a.left, a.job, black(bc, b.job, b.right));
+        }
+        if (b.red) {
+            return red(append(a, b.left), b.job, b.right);
+        }
+        return red(a.left, a.job, append(a.right, b));
+    }
+
+    /*------------------------------ Cursor ------------------------------*/
+
+    /**
+     * In-order cursor over jobs with keys in [low, high] of one version.
+     * Nodes have no parent links, so the path of pending ancestors is kept on a stack.
+     */
+    private static final class Cursor implements JobCursor {
+
+        private final PersistentRedBlackTree tree;
+        private final Node[] stack = new Node[MAX_HEIGHT];
+        private int depth = 0;
+        private int high;
+
+        Cursor(PersistentRedBlackTree tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        public Cursor reset(int low, int high) {
+            return reset(tree.root, low, high);
+        }
+
+        /**
+         * @param root Version to walk
+         * @param low
+         * @param high
+         * @return this cursor
+         */
+        Cursor reset(Node root, int low, int high) {
+            this.high = high;
+            Arrays.fill(stack, 0, depth, null);
+            depth = 0;
+            //Ancestors with key not less than low, down to the ceiling of low
+            Node n = root;
+            while (n != null) {
+                if (n.key() >= low) {
+                    stack[depth++] = n;
+                    n = n.left;
+                }
+                else {
+                    n = n.right;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0 && stack[depth - 1].key() <= high;
+        }
+
+        @Override
+        public RBNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node n = stack[--depth];
+            for (Node c = n.right; c != null; c = c.left) {
+                stack[depth++] = c;
+            }
+            return n.job;
+        }
+    }
+}
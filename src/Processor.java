@@ -0,0 +1,46 @@
+/**
+ * A simulated processor (core) and the job it is currently executing
+ * @author KUNWAR
+ */
+public class Processor {
+
+    public final int id;
+    public HeapNode currentJob = null;//Current Job being executed, null if idle
+    public int currentSlotEndTime = 0;//Time at which the 5s slot will end
+    public int currentJobCompletionTime = 0;//Time at which the current job being executed will end if continued indefinitely
+
+    public Processor(int id) {
+        this.id = id;
+    }
+
+    public boolean isIdle() {
+        return currentJob == null;
+    }
+
+    /**
+     * Time at which the current job will next change,
+     * i.e. completion time if it lies in current slot, else slot end time
+     * @return next event time, at most current time if it is due now, or Integer.MAX_VALUE if idle
+     */
+    public int nextEventTime() {
+        if (currentJob == null) {
+            return Integer.MAX_VALUE;
+        }
+        int eventTime = currentJobCompletionTime <= currentSlotEndTime ? currentJobCompletionTime : currentSlotEndTime;
+        return eventTime;
+    }
+
+    /**
+     * Mark processor idle
+     */
+    public void release() {
+        currentJob = null;
+        currentSlotEndTime = 0;
+        currentJobCompletionTime = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Processor:" + id;
+    }
+}
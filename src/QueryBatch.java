@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Read-only commands (PrintJob, NextJob, PreviousJob, CountJobs, RankJob, SelectJob) buffered
+ * until the index next changes, then answered in parallel.
+ *
+ * Between two inserts or completions the index is fixed and the only job state that changes
+ * is executed time, and only for jobs on processors. So every query keeps the current jobs
+ * of the processors and their executed times at its own time, and every dispatch while
+ * queries are buffered records the executed time of the job before it started to run.
+ * The executed time of a job at the time of a query is then its value at that query if it
+ * was running, else its value before its first dispatch after the query, else its value now.
+ * The scheduler calls beforeIndexChange and onDispatch, see Scheduler.queries.
+ *
+ * Flushing splits the batch into chunks of queries answered by fork-join tasks, each into
+ * its own in-memory sink, and then appends the sinks to output in the original order.
+ * The index is only read, which every JobIndex allows from several threads at once.
+ * @author KUNWAR
+ */
+public class QueryBatch {
+
+    private static final int CHUNK = 64;//Queries answered by one task
+
+    private final Scheduler scheduler;
+    private final OutputSink out;
+    private final int capacity;
+    private final int processors;
+    //Buffered queries
+    private final int[] commands;
+    private final int[] params;//Two per query
+    private final int[] paramCounts;
+    private final HeapNode[] running;//Current job of every processor, per query
+    private final int[] executed;//Executed time of those jobs, per query
+    private final int[] dispatchesBefore;//Number of dispatches recorded before query
+    private int size = 0;
+    //Dispatches since first buffered query
+    private final HeapNode[] dispatched;
+    private final int[] executedBefore;//Executed time of job when dispatched
+    private final int[] nextDispatch;//Next dispatch of same job, -1 if none
+    private final IdentityHashMap<HeapNode, int[]> dispatchesOf = new IdentityHashMap<HeapNode, int[]>();//First and last dispatch of job
+    private int dispatches = 0;
+    private final OutputSink[] sinks;//One per chunk, reused across flushes
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * @param scheduler Scheduler whose index is queried
+     * @param out Sink answers are written to
+     * @param capacity Queries, and dispatches, buffered at most
+     */
+    public QueryBatch(Scheduler scheduler, OutputSink out, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.scheduler = scheduler;
+        this.out = out;
+        this.capacity = capacity;
+        processors = scheduler.processors.length;
+        commands = new int[capacity];
+        params = new int[2 * capacity];
+        paramCounts = new int[capacity];
+        running = new HeapNode[capacity * processors];
+        executed = new int[capacity * processors];
+        dispatchesBefore = new int[capacity];
+        dispatched = new HeapNode[capacity];
+        executedBefore = new int[capacity];
+        nextDispatch = new int[capacity];
+        sinks = new OutputSink[(capacity + CHUNK - 1) / CHUNK];
+        for (int i = 0; i < sinks.length; i++) {
+            sinks[i] = new OutputSink();
+        }
+    }
+
+    /**
+     * @param command Command code from CommandReader
+     * @return true if command only reads the index
+     */
+    public static boolean isQuery(int command) {
+        switch (command) {
+            case CommandReader.PRINT_JOB:
+            case CommandReader.NEXT_JOB:
+            case CommandReader.PREVIOUS_JOB:
+            case CommandReader.COUNT_JOBS:
+            case CommandReader.RANK_JOB:
+            case CommandReader.SELECT_JOB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Buffer a query at current scheduler time, flushing first if the batch is full
+     * @param command
+     * @param args
+     * @param paramCount
+     * @throws IOException
+     */
+    public void add(int command, int[] args, int paramCount) throws IOException {
+        if (size == capacity) {
+            flush();
+        }
+        commands[size] = command;
+        params[2*size] = args[0];
+        params[2*size + 1] = paramCount > 1 ? args[1] : 0;
+        paramCounts[size] = paramCount;
+        for (int p = 0; p < processors; p++) {
+            HeapNode job = scheduler.processors[p].currentJob;
+            running[size * processors + p] = job;
+            executed[size * processors + p] = job == null ? 0 : job.key;
+        }
+        dispatchesBefore[size] = dispatches;
+        size++;
+    }
+
+    /**
+     * Called by the scheduler when a job is put on a processor, before it runs
+     * @param job
+     */
+    public void onDispatch(HeapNode job) {
+        if (size == 0) {
+            return;//No query can see an earlier executed time
+        }
+        if (dispatches == capacity) {
+            flushUnchecked();
+            return;
+        }
+        dispatched[dispatches] = job;
+        executedBefore[dispatches] = job.key;
+        nextDispatch[dispatches] = -1;
+        int[] firstAndLast = dispatchesOf.get(job);
+        if (firstAndLast == null) {
+            dispatchesOf.put(job, new int[]{dispatches, dispatches});
+        }
+        else {
+            nextDispatch[firstAndLast[1]] = dispatches;
+            firstAndLast[1] = dispatches;
+        }
+        dispatches++;
+    }
+
+    /**
+     * Called by the scheduler before a job is inserted into or deleted from the index
+     */
+    public void beforeIndexChange() {
+        flushUnchecked();
+    }
+
+    private void flushUnchecked() {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Answer all buffered queries and write results in the order queries were added
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (size > 0) {
+            int chunks = (size + CHUNK - 1) / CHUNK;
+            try {
+                if (chunks == 1) {
+                    answer(0, size, sinks[0]);
+                }
+                else {
+                    pool.invoke(new Chunks(0, chunks));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (int c = 0; c < chunks; c++) {
+                out.writeSink(sinks[c]);
+            }
+        }
+        Arrays.fill(running, 0, size * processors, null);
+        Arrays.fill(dispatched, 0, dispatches, null);
+        dispatchesOf.clear();
+        size = 0;
+        dispatches = 0;
+    }
+
+    /**
+     * Answers chunks [from, to), halving the range until one chunk is left
+     */
+    private final class Chunks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Chunks(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    answer(from * CHUNK, Math.min(size, (from + 1) * CHUNK), sinks[from]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunks(from, mid), new Chunks(mid, to));
+        }
+    }
+
+    /**
+     * Answer queries [from, to) in order, in the same format as jobscheduler
+     */
+    private void answer(int from, int to, OutputSink sink) throws IOException {
+        JobIndex index = scheduler.index;
+        JobCursor cursor = null;//Reused by every range of these queries
+        for (int q = from; q < to; q++) {
+            int a = params[2*q];
+            int b = params[2*q + 1];
+            switch (commands[q]) {
+                case CommandReader.PRINT_JOB: {
+                    if (paramCounts[q] == 1) {
+                        printJob(q, index.search(a), sink);
+                    }
+                    else {
+                        if (cursor == null) cursor = index.newCursor();
+                        cursor.reset(a, b);
+                        if (cursor.hasNext()) {
+                            writeJob(q, cursor.next(), sink);
+                            while (cursor.hasNext()) {
+                                sink.writeComma();
+                                writeJob(q, cursor.next(), sink);
+                            }
+                            sink.writeNewLine();
+                        }
+                        else {
+                            sink.writeEmpty();
+                        }
+                    }
+                    break;
+                }
+                case CommandReader.NEXT_JOB: {
+                    printJob(q, index.smallestGreaterThanK(a), sink);
+                    break;
+                }
+                case CommandReader.PREVIOUS_JOB: {
+                    printJob(q, index.greatestLessThanKey(a), sink);
+                    break;
+                }
+                case CommandReader.COUNT_JOBS: {
+                    sink.writeInt(index.countInRange(a, b));
+                    sink.writeNewLine();
+                    break;
+                }
+                case CommandReader.RANK_JOB: {
+                    sink.writeInt(index.rank(a));
+                    sink.writeNewLine();
+                    break;
+                }
+                case CommandReader.SELECT_JOB: {
+                    printJob(q, index.select(a), sink);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void printJob(int q, RBNode node, OutputSink sink) throws IOException {
+        if (node == null) {
+            sink.writeEmpty();
+        }
+        else {
+            writeJob(q, node, sink);
+            sink.writeNewLine();
+        }
+    }
+
+    private void writeJob(int q, RBNode node, OutputSink sink) throws IOException {
+        sink.writeJob(node.key, executedAt(q, node.heapNode), node.totalTime);
+    }
+
+    /**
+     * @param q Query
+     * @param job
+     * @return executed time of job when query q was added
+     */
+    private int executedAt(int q, HeapNode job) {
+        for (int p = 0; p < processors; p++) {
+            if (running[q * processors + p] == job) {
+                return executed[q * processors + p];
+            }
+        }
+        int[] firstAndLast = dispatchesOf.get(job);
+        if (firstAndLast != null) {
+            //Not running at query, so unchanged until its first dispatch after the query
+            for (int d = firstAndLast[0]; d >= 0; d = nextDispatch[d]) {
+                if (d >= dispatchesBefore[q]) {
+                    return executedBefore[d];
+                }
+            }
+        }
+        return job.key;
+    }
+}
@@ -5,7 +5,7 @@
  */
 public class RBNode {
 
-        public static final RBNode nil = new RBNode(-999, RedBlackTree.COLOR.BLACK);//sentinel
+        public static final RBNode nil = sentinel();//sentinel
 
         public int key; //Unique JobID
         public int totalTime;//Total executed time of current job
@@ -14,6 +14,7 @@ public class RBNode {
         public RBNode parent = nil;
         public RedBlackTree.COLOR color;//RED/Black color
         public HeapNode heapNode;//Object reference to heapNode in MinHeap
+        public int size = 1;//Number of nodes in subtree rooted here, 0 for sentinel
 
         //Constructors:
         public RBNode(int key, HeapNode heapNode){
@@ -30,6 +31,16 @@ public class RBNode {
             this.color = color;
         }
 
+        /**
+         * Creates a black sentinel, which counts as an empty subtree
+         * @return
+         */
+        public static RBNode sentinel(){
+            RBNode n = new RBNode(-999, RedBlackTree.COLOR.BLACK);
+            n.size = 0;
+            return n;
+        }
+
         @Override
         public String toString() {
             return "Key:"+this.key+",Color:"+this.color.name();
@@ -0,0 +1,50 @@
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy in-order cursor over nodes of a RedBlackTree with keys in [low, high].
+ * Walks from one node to its successor using parent references, so it needs
+ * neither recursion nor a list of results. Can be reset and reused across queries.
+ * Tree must not be modified while cursor is in use.
+ * @author KUNWAR
+ */
+public class RangeCursor implements JobCursor {
+
+    private final RedBlackTree tree;
+    private RBNode next;//Next node to be returned, null when done
+    private int high;
+
+    public RangeCursor(RedBlackTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Position cursor at the smallest key not less than low
+     * @param low
+     * @param high
+     * @return this cursor
+     */
+    public RangeCursor reset(int low, int high) {
+        this.high = high;
+        next = low <= high ? tree.ceiling(low) : null;
+        if (next != null && next.key > high) {
+            next = null;
+        }
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public RBNode next() {
+        RBNode node = next;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        RBNode s = tree.successor(node);
+        next = (s != null && s.key <= high) ? s : null;
+        return node;
+    }
+}
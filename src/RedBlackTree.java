@@ -4,11 +4,12 @@ import java.util.List;
 /**
  * RedBlack Tree implementation for scheduler
  * Uses sentinel nil values instead of null
+ * Default JobIndex of the scheduler
  * @author KUNWAR
  */
-public class RedBlackTree {
+public class RedBlackTree implements JobIndex {
 
-    public RBNode nil;//sentinel initialized in constructor
+    public RBNode nil;//sentinel initialized in constructor, one per tree as delete writes to it
     public RBNode root;// initialized in constructor, set to nil
 
     public enum COLOR{
@@ -17,7 +18,7 @@ public class RedBlackTree {
 
     //Constructor
     public RedBlackTree(){
-        nil = RBNode.nil;
+        nil = RBNode.sentinel();
         root = nil;
         root.left = nil;
         root.right = nil;
@@ -28,24 +29,20 @@ public class RedBlackTree {
     }
 
     /**
-     * Basic binary search method
+     * Basic binary search method, iterative
      * @param root
      * @param key
      * @return query Node
      */
     private RBNode search(RBNode root, int key){
-        if (root == nil){
-            return null;
-        }
-        if (root.key == key){
-            return root;
-        }
-        else if (key < root.key){
-            return search(root.left, key);
-        }
-        else{
-            return search(root.right, key);
+        RBNode node = root;
+        while (node != nil){
+            if (node.key == key){
+                return node;
+            }
+            node = key < node.key ? node.left : node.right;
         }
+        return null;
     }
 
     /**
@@ -88,6 +85,60 @@ public class RedBlackTree {
         return n;
     }
 
+    /**
+     * Returns node with key smallest but not less than parameter
+     * @param key
+     * @return
+     */
+    public RBNode ceiling(int key){
+        RBNode n = null;
+        RBNode node = root;
+        while (node != nil)
+            if (node.key < key)
+                node = node.right;
+            else {
+                n = node;
+                node = node.left;
+            }
+
+        return n;
+    }
+
+    /**
+     * In-order successor, found by walking down the right subtree
+     * or else up the parent references
+     * @param node Node in tree
+     * @return next node, null if node has the greatest key
+     */
+    public RBNode successor(RBNode node){
+        if (node.right != nil){
+            return getMin(node.right);
+        }
+        RBNode p = node.parent;
+        while (p != nil && node == p.right){
+            node = p;
+            p = p.parent;
+        }
+        return p == nil ? null : p;
+    }
+
+    /**
+     * Lazy cursor over nodes between keys key2 >= key1, in increasing order
+     * @param key1
+     * @param key2
+     * @return
+     */
+    public RangeCursor rangeCursor(int key1, int key2){
+        return newCursor().reset(key1, key2);
+    }
+
+    /**
+     * @return cursor over this tree, positioned by reset
+     */
+    public RangeCursor newCursor(){
+        return new RangeCursor(this);
+    }
+
     /**
      * Returns Nodes between keys key2 > key1
      * @param key1
@@ -96,32 +147,119 @@ public class RedBlackTree {
      */
     public List<RBNode> searchInRange(int key1, int key2){
         List<RBNode> list = new LinkedList<RBNode>();
-        searchInRange(root, list, key1, key2);
+        RangeCursor cursor = rangeCursor(key1, key2);
+        while (cursor.hasNext()) {
+            list.add(cursor.next());
+        }
         return list;
     }
 
     /**
-     *
-     * @param root
-     * @param list
+     * Number of nodes between keys key2 >= key1, using subtree sizes
      * @param key1
      * @param key2
+     * @return
      */
-    private void searchInRange(RBNode root, List<RBNode> list, int key1, int key2) {
-        if (root == nil) {
-            return;
+    public int countInRange(int key1, int key2){
+        if (key1 > key2){
+            return 0;
+        }
+        return rank(key2) - countLess(key1);
+    }
+
+    /**
+     * Number of nodes with key less than or equal to given key.
+     * For a key in tree, this is its 1-based position in increasing key order
+     * @param key
+     * @return
+     */
+    public int rank(int key){
+        int rank = 0;
+        RBNode node = root;
+        while (node != nil){
+            if (key < node.key){
+                node = node.left;
+            }
+            else {
+                rank += node.left.size + 1;
+                node = node.right;
+            }
         }
-        if (key1 < root.key) {
-            searchInRange(root.left, list, key1, key2);
+        return rank;
+    }
+
+    /**
+     * Number of nodes with key strictly less than given key
+     * @param key
+     * @return
+     */
+    private int countLess(int key){
+        int count = 0;
+        RBNode node = root;
+        while (node != nil){
+            if (key <= node.key){
+                node = node.left;
+            }
+            else {
+                count += node.left.size + 1;
+                node = node.right;
+            }
         }
+        return count;
+    }
 
-        if (key1 <= root.key && key2 >= root.key) {
-            list.add(root);
+    /**
+     * Returns the node with k-th smallest key
+     * @param k 1-based position
+     * @return null if k is out of range
+     */
+    public RBNode select(int k){
+        RBNode node = root;
+        while (node != nil){
+            int leftSize = node.left.size;
+            if (k <= leftSize){
+                node = node.left;
+            }
+            else if (k == leftSize + 1){
+                return node;
+            }
+            else {
+                k -= leftSize + 1;
+                node = node.right;
+            }
         }
+        return null;
+    }
 
-        if (key2 > root.key) {
-            searchInRange(root.right, list, key1, key2);
+    /**
+     * Number of nodes in tree
+     * @return
+     */
+    public int size(){
+        return root.size;
+    }
+
+    /**
+     * Number of black nodes on any path from root down to a leaf, found along the left spine.
+     * Height of tree is at most twice this value
+     * @return
+     */
+    public int blackHeight(){
+        int height = 0;
+        for (RBNode node = root; node != nil; node = node.left){
+            if (node.color == COLOR.BLACK){
+                height++;
+            }
         }
+        return height;
+    }
+
+    /**
+     * Tree is not thread safe, readers must be excluded from modifications
+     * @return false
+     */
+    public boolean isConcurrent(){
+        return false;
     }
 
     /**
@@ -155,6 +293,9 @@ public class RedBlackTree {
         }
         b.right = a;
         a.parent = b;
+        //b takes over a's subtree, a's size is recomputed from its new children
+        b.size = a.size;
+        a.size = a.left.size + a.right.size + 1;
         return b;
     }
 
@@ -188,6 +329,9 @@ public class RedBlackTree {
         }
         b.left = a;
         a.parent = b;
+        //b takes over a's subtree, a's size is recomputed from its new children
+        b.size = a.size;
+        a.size = a.left.size + a.right.size + 1;
         return b;
     }
 
@@ -196,12 +340,81 @@ public class RedBlackTree {
         insertNode(p);
     }
 
+    /**
+     * Inserts a batch of nodes with distinct keys, sorted in increasing key order.
+     * When the batch is large compared to the tree, existing nodes are merged with
+     * the batch and the whole tree is rebuilt balanced in linear time.
+     * Otherwise nodes are inserted one at a time.
+     * @param nodes sorted nodes
+     * @param n number of nodes in array to be inserted
+     */
+    public void insertAll(RBNode[] nodes, int n){
+        int existing = size();
+        int total = existing + n;
+        //One by one insertion costs about n*log(total), rebuild costs total
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(total)) < total){
+            for (int i = 0; i < n; i++){
+                insertNode(nodes[i]);
+            }
+            return;
+        }
+
+        //Merge existing nodes, walked in order, with the batch
+        RBNode[] merged = new RBNode[total];
+        RBNode node = root == nil ? null : getMin(root);
+        int i = 0;
+        int k = 0;
+        while (node != null || i < n){
+            if (i == n || (node != null && node.key < nodes[i].key)){
+                RBNode next = successor(node);
+                merged[k++] = node;
+                node = next;
+            }
+            else {
+                merged[k++] = nodes[i++];
+            }
+        }
+
+        //Nodes on the deepest level of a balanced tree are red, rest are black
+        int height = 31 - Integer.numberOfLeadingZeros(total);
+        root = build(merged, 0, total - 1, 0, height, nil);
+    }
+
+    /**
+     * Builds balanced subtree from sorted nodes in [lo, hi] by picking the middle as root.
+     * Subtree sizes on either side differ by at most one, so all leaves lie on the
+     * last two levels, and coloring only the last level red keeps black heights equal.
+     * @param nodes sorted nodes
+     * @param lo
+     * @param hi
+     * @param depth depth of subtree root
+     * @param height depth of deepest level
+     * @param parent
+     * @return root of subtree
+     */
+    private RBNode build(RBNode[] nodes, int lo, int hi, int depth, int height, RBNode parent){
+        if (lo > hi){
+            return nil;
+        }
+        int mid = (lo + hi) >>> 1;
+        RBNode p = nodes[mid];
+        p.parent = parent;
+        p.left = build(nodes, lo, mid - 1, depth + 1, height, p);
+        p.right = build(nodes, mid + 1, hi, depth + 1, height, p);
+        p.size = hi - lo + 1;
+        p.color = (depth == height && depth > 0) ? COLOR.RED : COLOR.BLACK;
+        return p;
+    }
+
     /**
      * Inserts node into RedBlack Tree
      * @param p
      */
     public void insertNode(RBNode p){
         p.color = COLOR.RED;
+        p.size = 1;
+        p.left = nil;
+        p.right = nil;
         //Update root if nil
         if (root == nil || root.key == p.key){
             root = p;
@@ -214,30 +427,31 @@ public class RedBlackTree {
     }
 
     /**
-     * Insert logic similar to BST insertion
-     * Updates parent and child references
+     * Insert logic similar to BST insertion, iterative
+     * Updates parent and child references, and subtree sizes along the path
      * @param root
      * @param p
      */
     private void insertUtil(RBNode root, RBNode p){
-        if (p.key < root.key){
-            if (root.left == nil){
-                //Insert here and return
-                root.left = p;
-                p.parent = root;
-            }
-            else {
-                insertUtil(root.left, p);
-            }
-        }
-        else{
-            if (root.right == nil){
-                //Insert here and return
-                root.right = p;
-                p.parent = root;
+        while (true){
+            root.size++;
+            if (p.key < root.key){
+                if (root.left == nil){
+                    //Insert here and return
+                    root.left = p;
+                    p.parent = root;
+                    return;
+                }
+                root = root.left;
             }
-            else {
-                insertUtil(root.right, p);
+            else{
+                if (root.right == nil){
+                    //Insert here and return
+                    root.right = p;
+                    p.parent = root;
+                    return;
+                }
+                root = root.right;
             }
         }
     }
@@ -330,25 +544,38 @@ public class RedBlackTree {
         b.parent = a.parent;
     }
 
-    public boolean delete(RBNode p){
-        return delete(p.key);
-    }
-
     /**
-     * Delete logic similar to BST delete if color is red,
-     * Otherwise fix violations
+     * Search for key, then delete the node found
      * @param key
-     * @return
+     * @return false if key is not in tree
      */
     public boolean delete(int key){
         RBNode y = search(root,key);
         if (y == null){
             return false;
         }
+        return delete(y);
+    }
+
+    /**
+     * Delete logic similar to BST delete if color is red,
+     * Otherwise fix violations
+     * Works directly on the given node, which must be in this tree
+     * @param y
+     * @return
+     */
+    public boolean delete(RBNode y){
         RBNode v;
         RBNode temp = y;
         COLOR origColor = y.color;
 
+        //Node physically unlinked is y, or its successor if y has two children.
+        //All its ancestors lose one node from their subtree
+        RBNode removed = (y.left == nil || y.right == nil) ? y : getMin(y.right);
+        for (RBNode a = removed.parent; a != nil; a = a.parent){
+            a.size--;
+        }
+
         //If left child is nil
         if (y.left == nil){
             v = y.right;
@@ -359,7 +586,7 @@ public class RedBlackTree {
             levelUp(y, y.left);//swap with left child
         //If both children are not nil
         } else {
-            temp = getMin(y.right);//temp holds left most node of right child of y
+            temp = removed;//temp holds left most node of right child of y
             origColor = temp.color;
             v = temp.right;
             //temp is root of y.right subtree
@@ -376,6 +603,7 @@ public class RedBlackTree {
             temp.left = y.left;
             temp.left.parent = temp;
             temp.color = y.color;
+            temp.size = y.size;
         }
         //If color was red, violation fixes are not required
         if (origColor == COLOR.BLACK) {
@@ -0,0 +1,341 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Scheduling core shared by the file driven jobscheduler and the live SchedulerService.
+ * Holds the index of all jobs (a Red-Black tree by default), the scheduling policy with
+ * waiting jobs (a Min-Heap on executed time by default) and the processors,
+ * and moves simulated time forward from one scheduler event to the next.
+ * Not thread safe, callers serialise access.
+ * @author KUNWAR
+ */
+public class Scheduler {
+
+    /**
+     * @param name "skiplist" for SkipListJobIndex, "persistent" for PersistentRedBlackTree,
+     *             "sharded" for ShardedJobIndex with a shard per processor up to jobID 1000000,
+     *             anything else for RedBlackTree
+     * @return new empty job index
+     */
+    public static JobIndex newIndex(String name) {
+        return newIndex(name, Runtime.getRuntime().availableProcessors(), 1000000);
+    }
+
+    /**
+     * @param name Index name, as for newIndex(String)
+     * @param shards Number of shards of a sharded index
+     * @param maxJobId Largest expected jobID of a sharded index
+     * @return new empty job index
+     */
+    public static JobIndex newIndex(String name, int shards, int maxJobId) {
+        if ("sharded".equals(name)) {
+            return new ShardedJobIndex(shards, maxJobId);
+        }
+        if ("skiplist".equals(name)) {
+            return new SkipListJobIndex();
+        }
+        if ("persistent".equals(name)) {
+            return new PersistentRedBlackTree();
+        }
+        return new RedBlackTree();
+    }
+
+    /**
+     * @param name "srt" for shortest remaining time, "mlfq" for multilevel feedback queue,
+     *             "bucket" for least executed time on a bucket queue,
+     *             anything else for least executed time on a heap
+     * @param heapArity Number of children per heap node
+     * @param quantum Time slice in ms (top level slice for mlfq)
+     * @return new empty policy
+     */
+    public static SchedulingPolicy newPolicy(String name, int heapArity, int quantum) {
+        if ("srt".equals(name)) {
+            return new ShortestRemainingTimePolicy(heapArity, quantum);
+        }
+        if ("mlfq".equals(name)) {
+            return new MultilevelFeedbackPolicy(3, quantum, 1000);
+        }
+        if ("bucket".equals(name)) {
+            return new BucketQueuePolicy(quantum);
+        }
+        return new LeastExecutedPolicy(heapArity, quantum);
+    }
+
+    public final JobIndex index;//All jobs by jobID
+    public final SchedulingPolicy policy;//Waiting jobs
+    public final Processor[] processors;//Simulated cores
+    private int t = 0;//Global time counter
+    private int jobCount = 0;//Jobs in index, kept here as size() of some indexes is not O(1)
+    public boolean debug = false;//set true for console outputs
+    public SchedulerMetrics metrics = null;//set to record metrics
+    public WriteAheadLog log = null;//set to log job completions
+    public QueryBatch queries = null;//set to buffer queries, told about dispatches and answered before the index changes
+    private RBNode[] batchRbNodes = new RBNode[0];//Scratch space for insertJobs
+    private HeapNode[] batchHeapNodes = new HeapNode[0];
+
+    /**
+     * @param processors Number of simulated processors
+     * @param heapArity Number of children per Min Heap node
+     */
+    public Scheduler(int processors, int heapArity) {
+        this(processors, heapArity, new RedBlackTree());
+    }
+
+    /**
+     * Least executed time first, with 5 ms slices
+     * @param processors Number of simulated processors
+     * @param heapArity Number of children per Min Heap node
+     * @param index Empty job index
+     */
+    public Scheduler(int processors, int heapArity, JobIndex index) {
+        this(processors, new LeastExecutedPolicy(heapArity, 5), index);
+    }
+
+    /**
+     * @param processors Number of simulated processors
+     * @param policy Empty scheduling policy
+     * @param index Empty job index
+     */
+    public Scheduler(int processors, SchedulingPolicy policy, JobIndex index) {
+        this.index = index;
+        this.policy = policy;
+        this.processors = new Processor[processors];
+        for (int i = 0; i < processors; i++) {
+            this.processors[i] = new Processor(i);
+        }
+    }
+
+    /**
+     * @return current global time
+     */
+    public int time() {
+        return t;
+    }
+
+    /**
+     * @return number of jobs in index
+     */
+    public int jobCount() {
+        return jobCount;
+    }
+
+    /**
+     * Create red-black and min-heap nodes and point to each other
+     * Then insert in index and policy
+     * @param id
+     * @param totTime
+     * @return the new tree node
+     */
+    public RBNode insertJob(int id, int totTime) {
+        if (debug) System.out.println("Inserting jobId:"+id+", total time:"+totTime);
+        RBNode rbNode = newJob(id, totTime);
+        if (metrics != null) metrics.onArrival(rbNode.heapNode, t);
+        if (queries != null) queries.beforeIndexChange();
+        index.insertNode(rbNode);
+        policy.add(rbNode.heapNode);
+        jobCount++;
+        return rbNode;
+    }
+
+    /**
+     * Nodes for all jobs are created first, sorted by jobID and then
+     * added to index and policy in bulk
+     * @param params pairs of jobID, total time
+     * @param paramCount
+     */
+    public void insertJobs(int[] params, int paramCount) {
+        int n = paramCount / 2;
+        if (debug) System.out.println("Inserting batch of "+n+" jobs");
+        if (batchRbNodes.length < n) {
+            batchRbNodes = new RBNode[n];
+            batchHeapNodes = new HeapNode[n];
+        }
+        for (int i = 0; i < n; i++) {
+            RBNode rbNode = newJob(params[2*i], params[2*i + 1]);
+            if (metrics != null) metrics.onArrival(rbNode.heapNode, t);
+            batchRbNodes[i] = rbNode;
+            batchHeapNodes[i] = rbNode.heapNode;
+        }
+        //Linear when jobIDs already arrive in increasing order
+        Arrays.sort(batchRbNodes, 0, n, new Comparator<RBNode>() {
+            @Override
+            public int compare(RBNode a, RBNode b) {
+                return Integer.compare(a.key, b.key);
+            }
+        });
+        if (queries != null) queries.beforeIndexChange();
+        index.insertAll(batchRbNodes, n);
+        policy.addAll(batchHeapNodes, n);
+        jobCount += n;
+        Arrays.fill(batchRbNodes, 0, n, null);
+        Arrays.fill(batchHeapNodes, 0, n, null);
+    }
+
+    /**
+     * Rebuild an empty scheduler from a checkpoint in linear time: the index from jobs
+     * sorted by jobID, the policy from waiting jobs in policy order.
+     * Current jobs of processors are set by the caller.
+     * @param time Global time
+     * @param jobs All jobs, sorted by jobID
+     * @param n
+     * @param waiting Waiting jobs, in the order given by policy.waitingJobs()
+     * @param waitingCount
+     */
+    public void restore(int time, RBNode[] jobs, int n, HeapNode[] waiting, int waitingCount) {
+        if (index.size() != 0 || !policy.isEmpty()) {
+            throw new IllegalStateException("Scheduler must be empty to restore a checkpoint");
+        }
+        t = time;
+        index.insertAll(jobs, n);
+        policy.restore(waiting, waitingCount);
+        jobCount = n;
+    }
+
+    static RBNode newJob(int id, int totTime) {
+        RBNode rbNode = new RBNode(id);
+        rbNode.totalTime = totTime;
+        HeapNode heapNode = new HeapNode(0);
+        rbNode.heapNode = heapNode;
+        heapNode.rbNode = rbNode;
+        return rbNode;
+    }
+
+    /**
+     * @param node Job in tree
+     * @return true if job is currently executing on a processor
+     */
+    public boolean isRunning(RBNode node) {
+        for (Processor p : processors) {
+            if (p.currentJob == node.heapNode) return true;
+        }
+        return false;
+    }
+
+    /**
+     * When all commands are processed but jobs still remain
+     */
+    public void executeRemainingJobs() {
+        while (!allIdle()){
+            if (debug) System.out.println("Time:" + t);
+            dispatchOrUpdateJobs();
+            incrementTime(allIdle() ? 1 : nextEventTime() - t);//Due events were just handled, so next one is ahead
+        }
+    }
+
+    /**
+     * Moves global time forward to the given time. Instead of ticking every ms,
+     * time jumps directly from one scheduler event (dispatch, slot end, job completion)
+     * to the next, as nothing changes in between apart from the executed time of current jobs.
+     * @param time Time to advance to
+     */
+    public void advanceTo(int time) {
+        while (t < time) {
+            if (debug) System.out.println("Time:" + t);
+            dispatchOrUpdateJobs();
+            if (allIdle()) {
+                //Processors idle, nothing can happen until next command
+                t = time;
+                return;
+            }
+            incrementTime(Math.min(nextEventTime(), time) - t);
+        }
+    }
+
+    public boolean allIdle() {
+        for (Processor p : processors) {
+            if (!p.isIdle()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Earliest time at which any processor will change its current job
+     * @return next event time, at most current time if one is due now, or Integer.MAX_VALUE if all processors are idle
+     */
+    public int nextEventTime() {
+        int eventTime = Integer.MAX_VALUE;
+        for (Processor p : processors) {
+            eventTime = Math.min(eventTime, p.nextEventTime());
+        }
+        return eventTime;
+    }
+
+    /**
+     * Increments both global time and executed time of current jobs
+     * @param delta Time elapsed
+     */
+    private void incrementTime(int delta) {
+        t += delta;
+        for (Processor p : processors) {
+            if (p.currentJob != null) {
+                p.currentJob.key = p.currentJob.key + delta;
+            }
+        }
+    }
+
+    /**
+     * Update every processor at current time, in processor order
+     */
+    public void dispatchOrUpdateJobs() {
+        for (Processor p : processors) {
+            dispatchOrUpdateJob(p);
+        }
+    }
+
+    /**
+     * Policy picks the next job, by default the one with least executed time from
+     * the Min Heap. This job will run upto its quantum (5 ms by default) or upto
+     * it's total execution time if it lies in current slot.
+     * Otherwise, we will re-queue the job in policy at the end of current slot.
+     * Events that are due, or overdue, at current time are handled now.
+     *
+     * @param p Processor to update
+     */
+    private void dispatchOrUpdateJob(Processor p) {
+        if (p.currentJob != null){
+            if (p.currentJobCompletionTime <= p.currentSlotEndTime){
+                if (t < p.currentJobCompletionTime) return;
+                complete(p);
+            }
+            else {
+                if (t < p.currentSlotEndTime) return;
+                //Slot ends, re-queue job in policy and reset current job fields
+                if (metrics != null) metrics.onPreemption(p.currentJob, t);
+                policy.requeue(p.currentJob);
+                p.release();
+            }
+        }
+        //Processor is idle, so dispatch next job
+        while (p.currentJob == null) {
+            if (policy.isEmpty()){
+                if (debug) System.out.println("No Job to dispatch on "+p);
+                return;
+            }
+            p.currentJob = policy.next();
+
+            p.currentSlotEndTime = t + policy.quantum(p.currentJob);
+            if (metrics != null) metrics.onDispatch(p.currentJob, t, policy.size(), jobCount, index);
+            if (queries != null) queries.onDispatch(p.currentJob);
+            p.currentJobCompletionTime = t + p.currentJob.rbNode.totalTime - p.currentJob.key -1;
+            if (debug) System.out.println("Dispatched Job:"+p.currentJob.rbNode.key+" at time:"+t+" on "+p);
+            if (p.currentJobCompletionTime <= t) {
+                //Nothing left to run, e.g. total time of 1 ms, so job completes at once
+                complete(p);
+            }
+        }
+    }
+
+    /**
+     * Job completed, so remove from tree and reset current job fields
+     * @param p Processor running the job
+     */
+    private void complete(Processor p) {
+        if (debug) System.out.println("Job Completed:"+p.currentJob.rbNode.key+" at time"+t);
+        if (queries != null) queries.beforeIndexChange();
+        index.delete(p.currentJob.rbNode);
+        jobCount--;
+        if (metrics != null) metrics.onCompletion(p.currentJob, t);
+        if (log != null) log.append(WriteAheadLog.COMPLETE, t, p.currentJob.rbNode.key, p.currentJob.rbNode.totalTime);
+        p.release();
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.PrintStream;
+
+/**
+ * Instrumentation of a Scheduler. Records per job arrival, first dispatch, completion and
+ * number of preemptions (kept on the HeapNode), aggregates them into latency histograms,
+ * and samples global counters at every dispatch.
+ * @author KUNWAR
+ */
+public class SchedulerMetrics {
+
+    private final Histogram waitTime = new Histogram();//Arrival to first dispatch
+    private final Histogram turnaround = new Histogram();//Arrival to completion
+    private final Histogram preemptionsPerJob = new Histogram();
+    private final Histogram waitingJobs = new Histogram();//Policy size at dispatch
+    private final Histogram indexSize = new Histogram();//Number of jobs at dispatch
+    private long arrivals = 0;
+    private long dispatches = 0;//Context switches onto a processor
+    private long preemptions = 0;
+    private long completions = 0;
+    private int maxBlackHeight = 0;
+    private final long startNanos = System.nanoTime();
+
+    public void onArrival(HeapNode job, int t) {
+        job.arrivalTime = t;
+        job.firstDispatchTime = -1;
+        job.preemptions = 0;
+        arrivals++;
+    }
+
+    /**
+     * @param job Job being dispatched
+     * @param t Current time
+     * @param waiting Number of jobs still waiting
+     * @param jobs Number of jobs in index, counted by the scheduler
+     * @param index Index of all jobs, for the height of a Red-Black tree
+     */
+    public void onDispatch(HeapNode job, int t, int waiting, int jobs, JobIndex index) {
+        dispatches++;
+        if (job.firstDispatchTime < 0) {
+            job.firstDispatchTime = t;
+            waitTime.record(t - job.arrivalTime);
+        }
+        waitingJobs.record(waiting);
+        indexSize.record(jobs);
+        if (index instanceof RedBlackTree) {
+            maxBlackHeight = Math.max(maxBlackHeight, ((RedBlackTree) index).blackHeight());
+        }
+    }
+
+    public void onPreemption(HeapNode job, int t) {
+        job.preemptions++;
+        preemptions++;
+    }
+
+    public void onCompletion(HeapNode job, int t) {
+        completions++;
+        turnaround.record(t - job.arrivalTime);
+        preemptionsPerJob.record(job.preemptions);
+    }
+
+    /**
+     * Print report of all metrics
+     * @param out
+     * @param t Simulated time at end of run
+     */
+    public void report(PrintStream out, int t) {
+        double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+        out.println("Scheduler metrics");
+        out.println("jobs arrived: " + arrivals + ", completed: " + completions);
+        out.println("dispatches: " + dispatches + ", preemptions: " + preemptions);
+        out.println("wait time (ms): " + waitTime);
+        out.println("turnaround time (ms): " + turnaround);
+        out.println("preemptions per job: " + preemptionsPerJob);
+        out.println("waiting jobs at dispatch: " + waitingJobs);
+        out.println("indexed jobs at dispatch: " + indexSize);
+        if (maxBlackHeight > 0) {
+            out.println("max tree black height: " + maxBlackHeight + " (tree height <= " + 2 * maxBlackHeight + ")");
+        }
+        out.println(String.format("simulated time: %d ms, wall time: %.3f s", t, wallSeconds));
+        out.println(String.format("dispatches per simulated second: %.1f, per wall second: %.1f",
+                t == 0 ? 0 : dispatches * 1000.0 / t, wallSeconds == 0 ? 0 : dispatches / wallSeconds));
+    }
+}
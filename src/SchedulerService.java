@@ -0,0 +1,354 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Long running in-process scheduler. Simulated time follows the wall clock (1 ms per ms
+ * since start). A dispatcher thread moves the Scheduler forward to every slot end and job
+ * completion, while any number of producer threads submit jobs and query them concurrently.
+ *
+ * State changes (dispatch, insert) hold the write lock of a read-write lock, queries only the
+ * read lock, so queries run in parallel with each other and only exclude the short dispatch
+ * steps. With a concurrent JobIndex lookups and range scans take no lock, and only the reads
+ * of time, processors and executed times, which the dispatcher changes in place, hold the read
+ * lock. Executed time of running jobs is computed from the clock, so queries never need to
+ * move the scheduler forward.
+ *
+ * With a WriteAheadLog every insert and completion is logged, and insert returns only once
+ * its record is on disk. Producers sync after releasing the lock, so concurrent inserts
+ * share one force of the log. After a crash, recover rebuilds state from the last
+ * checkpoint and the log.
+ * @author KUNWAR
+ */
+public class SchedulerService implements Closeable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Scheduler scheduler;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object checkpointLock = new Object();//Checkpoints are written one at a time, in order
+    private final Thread dispatcher;
+    private final WriteAheadLog log;//null if not durable
+    private volatile int startTime = 0;//Clock value at start, later than 0 after recover
+    private volatile long startNanos;//Set by start, read by producer threads through now
+    private volatile boolean running = false;
+    private final boolean lockFreeReads;//Index lookups need no lock, see beginRead
+
+    /**
+     * @param processors Number of simulated processors
+     * @param heapArity Number of children per Min Heap node
+     */
+    public SchedulerService(int processors, int heapArity) {
+        this(processors, heapArity, new RedBlackTree());
+    }
+
+    /**
+     * @param processors Number of simulated processors
+     * @param heapArity Number of children per Min Heap node
+     * @param index Empty job index. If it is concurrent, lookups do not take the read lock.
+     */
+    public SchedulerService(int processors, int heapArity, JobIndex index) {
+        this(processors, heapArity, index, null);
+    }
+
+    /**
+     * @param processors Number of simulated processors
+     * @param heapArity Number of children per Min Heap node
+     * @param index Empty job index. If it is concurrent, lookups do not take the read lock.
+     * @param log Log of inserts and completions, or null. It stays open when service is closed.
+     */
+    public SchedulerService(int processors, int heapArity, JobIndex index, WriteAheadLog log) {
+        scheduler = new Scheduler(processors, heapArity, index);
+        scheduler.log = log;
+        this.log = log;
+        lockFreeReads = index.isConcurrent();
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatchLoop();
+            }
+        }, "scheduler-dispatcher");
+        dispatcher.setDaemon(true);
+    }
+
+    /**
+     * Rebuild state from last checkpoint and the log, before start. The clock then
+     * continues from the time of the last logged event, time while down is not counted.
+     * @param checkpointFile Checkpoint written by checkpoint(), or one that does not exist to replay whole log
+     * @return number of log records replayed
+     * @throws IOException
+     */
+    public int recover(File checkpointFile) throws IOException {
+        if (log == null) {
+            throw new IllegalStateException("Service has no log to recover from");
+        }
+        long offset = 0;
+        if (checkpointFile.exists()) {
+            offset = Checkpoint.restore(checkpointFile, scheduler).inputOffset;
+        }
+        int records = log.replay(scheduler, offset);
+        startTime = scheduler.time();
+        return records;
+    }
+
+    /**
+     * Write a checkpoint of current state, with the log position it corresponds to in place
+     * of the input offset. Once it is saved, log records before it are discarded.
+     * State is copied under the write lock, then the log sync and the file writes happen
+     * after releasing it, so dispatcher and producers are held up only for the copy.
+     * @param checkpointFile
+     * @throws IOException
+     */
+    public void checkpoint(File checkpointFile) throws IOException {
+        synchronized (checkpointLock) {
+            Checkpoint checkpoint;
+            long logPosition = 0;
+            lock.writeLock().lock();
+            try {
+                scheduler.advanceTo(now());
+                if (log != null) logPosition = log.position();
+                checkpoint = Checkpoint.capture(scheduler, logPosition, 0);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (log != null) {
+                log.sync(logPosition);//Checkpoint must not get ahead of the log on disk
+            }
+            checkpoint.save(checkpointFile);
+            if (log != null) {
+                log.discardBefore(logPosition);
+            }
+        }
+    }
+
+    /**
+     * Start the clock at time 0, or where recover left it, and the dispatcher thread
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        running = true;
+        dispatcher.start();
+    }
+
+    /**
+     * @return ms elapsed since start
+     * @throws IllegalStateException once time no longer fits in an int, about 24.8 days after time 0
+     */
+    public int now() {
+        long time = startTime + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (time > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Time " + time + " ms is past the largest scheduler time, " + Integer.MAX_VALUE + " ms");
+        }
+        return (int) time;
+    }
+
+    /**
+     * Dispatcher: bring scheduler up to current time, then sleep until the next slot end or
+     * job completion. Inserts wake it up early as they may dispatch onto an idle processor.
+     */
+    private void dispatchLoop() {
+        while (running) {
+            long parkNanos;
+            lock.writeLock().lock();
+            try {
+                int now = now();
+                scheduler.advanceTo(now);
+                int next = scheduler.nextEventTime();
+                //Event at time e is handled by advancing past it, to e + 1
+                parkNanos = next == Integer.MAX_VALUE ? IDLE_PARK_NANOS
+                        : TimeUnit.MILLISECONDS.toNanos(Math.max((long) next + 1 - now, 0));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (parkNanos > 0) {
+                LockSupport.parkNanos(this, parkNanos);
+            }
+        }
+    }
+
+    /**
+     * Insert a new job at current time
+     * @param jobId
+     * @param totalTime
+     * @throws IllegalArgumentException if a job with same ID exists
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    public void insert(int jobId, int totalTime) {
+        long logPosition = 0;
+        lock.writeLock().lock();
+        try {
+            scheduler.advanceTo(now());
+            if (scheduler.index.search(jobId) != null) {
+                throw new IllegalArgumentException("Job " + jobId + " already exists");
+            }
+            if (log != null) logPosition = log.append(WriteAheadLog.INSERT, scheduler.time(), jobId, totalTime);
+            scheduler.insertJob(jobId, totalTime);
+            scheduler.dispatchOrUpdateJobs();//Idle processors pick up the job right away
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LockSupport.unpark(dispatcher);
+        if (log != null) {
+            try {
+                log.sync(logPosition);//Group commit with other producers
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @param jobId
+     * @return job, or null if there is no such job
+     */
+    public JobStatus printJob(int jobId) {
+        beginRead();
+        try {
+            return status(scheduler.index.search(jobId));
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * @param low
+     * @param high
+     * @return jobs with ID in [low, high], in increasing ID order
+     */
+    public List<JobStatus> printJobs(int low, int high) {
+        beginRead();
+        try {
+            List<RBNode> nodes = new ArrayList<RBNode>();
+            Iterator<RBNode> cursor = scheduler.index.rangeCursor(low, high);
+            while (cursor.hasNext()) {
+                nodes.add(cursor.next());
+            }
+            return statuses(nodes);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * @param jobId
+     * @return job with smallest ID greater than jobId, or null
+     */
+    public JobStatus nextJob(int jobId) {
+        beginRead();
+        try {
+            return status(scheduler.index.smallestGreaterThanK(jobId));
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * @param jobId
+     * @return job with greatest ID less than jobId, or null
+     */
+    public JobStatus previousJob(int jobId) {
+        beginRead();
+        try {
+            return status(scheduler.index.greatestLessThanKey(jobId));
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * @param low
+     * @param high
+     * @return number of jobs with ID in [low, high]
+     */
+    public int countJobs(int low, int high) {
+        beginRead();
+        try {
+            return scheduler.index.countInRange(low, high);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Take read lock for index lookups, unless index supports lock-free lookups.
+     * Status of the jobs found is read under the read lock in any case, see statuses.
+     */
+    private void beginRead() {
+        if (!lockFreeReads) {
+            lock.readLock().lock();
+        }
+    }
+
+    private void endRead() {
+        if (!lockFreeReads) {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Time up to which running jobs have executed. Capped at the next scheduler event,
+     * in case dispatcher has not yet caught up with it.
+     * @return
+     */
+    private int liveTime() {
+        return Math.max(Math.min(now(), scheduler.nextEventTime()), scheduler.time());
+    }
+
+    /**
+     * @param node
+     * @return triplet for job, or null if node is null
+     */
+    private JobStatus status(RBNode node) {
+        if (node == null) {
+            return null;
+        }
+        return statuses(Collections.singletonList(node)).get(0);
+    }
+
+    /**
+     * Time, processors and executed times are changed in place by the dispatcher, so they are
+     * read under the read lock even when the nodes were found without it. The lock is reentrant,
+     * so callers may already hold it.
+     * @param nodes Jobs found in index
+     * @return triplets for jobs, with executed time of running jobs brought up to liveTime
+     */
+    private List<JobStatus> statuses(List<RBNode> nodes) {
+        List<JobStatus> list = new ArrayList<JobStatus>(nodes.size());
+        lock.readLock().lock();
+        try {
+            int liveTime = liveTime();
+            for (RBNode node : nodes) {
+                int executed = node.heapNode.key;
+                if (scheduler.isRunning(node)) {
+                    executed += liveTime - scheduler.time();
+                }
+                list.add(new JobStatus(node.key, executed, node.totalTime));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return list;
+    }
+
+    /**
+     * Stop dispatcher thread. Jobs still waiting are abandoned.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
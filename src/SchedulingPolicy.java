@@ -0,0 +1,67 @@
+/**
+ * Decides which waiting job is dispatched next and for how long.
+ * Each policy keeps waiting jobs in its own priority structure.
+ * @author KUNWAR
+ */
+public interface SchedulingPolicy {
+
+    /**
+     * New job has arrived
+     * @param job
+     */
+    void add(HeapNode job);
+
+    /**
+     * Many new jobs have arrived at once
+     * @param jobs
+     * @param n number of jobs in array to be added
+     */
+    void addAll(HeapNode[] jobs, int n);
+
+    /**
+     * Job used its whole time slice without completing and waits again
+     * @param job
+     */
+    void requeue(HeapNode job);
+
+    /**
+     * Remove the job to be dispatched next
+     * @return job, null if none is waiting
+     */
+    HeapNode next();
+
+    boolean isEmpty();
+
+    /**
+     * @return number of waiting jobs
+     */
+    int size();
+
+    /**
+     * Length of the time slice for a job that is being dispatched
+     * @param job
+     * @return slice length in ms
+     */
+    int quantum(HeapNode job);
+
+    /**
+     * Settings that decide dispatch order and the layout of waitingJobs, such as heap arity
+     * and quantum. A checkpoint records them and is only restored under the same settings.
+     * @return settings as comma separated name=value pairs
+     */
+    String settings();
+
+    /**
+     * Waiting jobs in policy order, for a checkpoint. On return the index field of every
+     * waiting job holds its position in the array.
+     * @return array of size() jobs
+     */
+    HeapNode[] waitingJobs();
+
+    /**
+     * Refill an empty policy from a checkpoint, giving the same state as when waitingJobs was called
+     * @param jobs waiting jobs in the order returned by waitingJobs, with their level
+     * @param n number of jobs in array
+     */
+    void restore(HeapNode[] jobs, int n);
+}
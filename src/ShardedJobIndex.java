@@ -0,0 +1,527 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Job index split into shards by jobID range, each its own Red-Black tree behind its own
+ * read-write lock. Lookups only lock the shards they touch, so the index is safe without
+ * external locking and a change only holds up lookups in its own shard. Changes come from
+ * the Scheduler, which also updates the global policy, so they are still made one at a time
+ * by its single writer; the shard locks are what let queries skip the scheduler lock.
+ *
+ * IDs [0, maxJobId] are divided into equal ranges, smaller IDs go to the first shard and
+ * larger ones to the last. Next and previous job continue into neighbouring shards when a
+ * shard has no answer. Range reports, range cursors and batch inserts that cover several
+ * shards run one task per shard on the fork-join pool, range results are concatenated in
+ * shard order, which is ID order.
+ * @author KUNWAR
+ */
+public class ShardedJobIndex implements JobIndex {
+
+    private static final int CURSOR_CHUNK = 256;//Jobs a range cursor reads per shard lock
+
+    private final RedBlackTree[] shards;
+    private final ReentrantReadWriteLock[] locks;
+    private final long width;//IDs per shard
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * @param shardCount Number of shards
+     * @param maxJobId Largest expected jobID, IDs [0, maxJobId] are spread evenly over shards
+     */
+    public ShardedJobIndex(int shardCount, int maxJobId) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Number of shards must be at least 1: " + shardCount);
+        }
+        if (maxJobId < 0) {
+            throw new IllegalArgumentException("Largest jobID must not be negative: " + maxJobId);
+        }
+        shards = new RedBlackTree[shardCount];
+        locks = new ReentrantReadWriteLock[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new RedBlackTree();
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        width = Math.max(1, (maxJobId + 1L + shardCount - 1) / shardCount);
+    }
+
+    private int shardOf(int key) {
+        if (key < 0) {
+            return 0;
+        }
+        return (int) Math.min(key / width, shards.length - 1);
+    }
+
+    /*------------------------------ Lookups ------------------------------*/
+
+    @Override
+    public RBNode search(int key) {
+        int s = shardOf(key);
+        locks[s].readLock().lock();
+        try {
+            return shards[s].search(key);
+        } finally {
+            locks[s].readLock().unlock();
+        }
+    }
+
+    @Override
+    public RBNode greatestLessThanKey(int key) {
+        int s = shardOf(key);
+        locks[s].readLock().lock();
+        try {
+            RBNode node = shards[s].greatestLessThanKey(key);
+            if (node != null) {
+                return node;
+            }
+        } finally {
+            locks[s].readLock().unlock();
+        }
+        //Largest job of the nearest non-empty shard below
+        for (s--; s >= 0; s--) {
+            locks[s].readLock().lock();
+            try {
+                RBNode node = shards[s].select(shards[s].size());
+                if (node != null) {
+                    return node;
+                }
+            } finally {
+                locks[s].readLock().unlock();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public RBNode smallestGreaterThanK(int key) {
+        int s = shardOf(key);
+        locks[s].readLock().lock();
+        try {
+            RBNode node = shards[s].smallestGreaterThanK(key);
+            if (node != null) {
+                return node;
+            }
+        } finally {
+            locks[s].readLock().unlock();
+        }
+        //Smallest job of the nearest non-empty shard above
+        for (s++; s < shards.length; s++) {
+            locks[s].readLock().lock();
+            try {
+                RBNode node = shards[s].select(1);
+                if (node != null) {
+                    return node;
+                }
+            } finally {
+                locks[s].readLock().unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shards overlapping the range are searched in parallel when there are several
+     */
+    @Override
+    public List<RBNode> searchInRange(int key1, int key2) {
+        if (key1 > key2) {
+            return new ArrayList<RBNode>();
+        }
+        int first = shardOf(key1);
+        int last = shardOf(key2);
+        if (first == last) {
+            return new RangeTask(first, key1, key2).compute();
+        }
+        List<RangeTask> tasks = new ArrayList<RangeTask>();
+        for (int s = first; s <= last; s++) {
+            tasks.add(new RangeTask(s, key1, key2));
+        }
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (RangeTask task : tasks) {
+                pool.execute(task);
+            }
+        }
+        int total = 0;
+        for (RangeTask task : tasks) {
+            total += task.join().size();
+        }
+        List<RBNode> result = new ArrayList<RBNode>(total);
+        for (RangeTask task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    /**
+     * Range report of one shard under its read lock
+     */
+    private final class RangeTask extends RecursiveTask<List<RBNode>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int shard;
+        private final int key1;
+        private final int key2;
+
+        RangeTask(int shard, int key1, int key2) {
+            this.shard = shard;
+            this.key1 = key1;
+            this.key2 = key2;
+        }
+
+        @Override
+        protected List<RBNode> compute() {
+            locks[shard].readLock().lock();
+            try {
+                return shards[shard].searchInRange(key1, key2);
+            } finally {
+                locks[shard].readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Every shard overlapping the range is read by its own fork-join task, in chunks of up to
+     * CURSOR_CHUNK jobs each taken under the shard read lock, so memory does not grow with the
+     * range. The first chunks of all shards are read in parallel when the cursor is reset, and
+     * the next chunk of a shard while the cursor returns the one before. Jobs are returned
+     * shard by shard, which is ID order. Jobs inserted or deleted between chunks may or may
+     * not be seen, as with the other concurrent indexes. A range within one shard is read on
+     * the calling thread.
+     */
+    @Override
+    public Iterator<RBNode> rangeCursor(int key1, int key2) {
+        return newCursor().reset(key1, key2);
+    }
+
+    @Override
+    public JobCursor newCursor() {
+        return new Cursor();
+    }
+
+    private final class Cursor implements JobCursor {
+
+        private int high;
+        private int firstShard;
+        private int lastShard;
+        private int shard;//Shard being returned
+        private RBNode[] chunk;//Chunk being returned
+        private int count = 0;
+        private int pos = 0;
+        private final ChunkTask[] pending = new ChunkTask[shards.length];//Chunk being read per shard, null when shard is done
+        //Two chunk buffers per shard, one returned while the other is read into, created when first used
+        private final RBNode[][] buffers = new RBNode[2 * shards.length][];
+        private final RangeCursor[] shardCursors = new RangeCursor[shards.length];
+
+        @Override
+        public Cursor reset(int low, int high) {
+            //Tasks of the last range must not write into buffers once they are reused
+            for (int s = firstShard; s <= lastShard; s++) {
+                if (pending[s] != null) {
+                    pending[s].join();
+                    Arrays.fill(pending[s].into, 0, pending[s].count, null);
+                    pending[s] = null;
+                }
+            }
+            if (chunk != null) {
+                Arrays.fill(chunk, pos, count, null);
+            }
+            count = 0;
+            pos = 0;
+            this.high = high;
+            firstShard = shardOf(low);
+            lastShard = low <= high ? shardOf(high) : firstShard - 1;
+            shard = firstShard;
+            for (int s = firstShard; s <= lastShard; s++) {
+                pending[s] = start(new ChunkTask(s, low, high, buffer(s, 0)));
+            }
+            return this;
+        }
+
+        private RBNode[] buffer(int s, int which) {
+            int i = 2 * s + which;
+            if (buffers[i] == null) {
+                buffers[i] = new RBNode[CURSOR_CHUNK];
+            }
+            return buffers[i];
+        }
+
+        /**
+         * Chunks of a range within one shard are read on this thread, others on the pool
+         */
+        private ChunkTask start(ChunkTask task) {
+            if (firstShard == lastShard) {
+                task.invoke();
+            } else {
+                pool.execute(task);
+            }
+            return task;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < count || fill();
+        }
+
+        @Override
+        public RBNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RBNode node = chunk[pos];
+            chunk[pos++] = null;
+            return node;
+        }
+
+        /**
+         * Take the chunk read for the current shard, moving on to later shards while it has no
+         * more jobs. A full chunk may not be the last one, so the next is started at once
+         * into the other buffer of the shard.
+         * @return false at end of range
+         */
+        private boolean fill() {
+            count = 0;
+            pos = 0;
+            while (shard <= lastShard) {
+                ChunkTask task = pending[shard];
+                if (task == null) {
+                    shard++;//Shard exhausted
+                    continue;
+                }
+                task.join();
+                pending[shard] = null;
+                if (task.count == CURSOR_CHUNK) {
+                    long from = task.into[CURSOR_CHUNK - 1].key + 1L;
+                    if (from <= high) {
+                        RBNode[] other = task.into == buffer(shard, 0) ? buffer(shard, 1) : buffer(shard, 0);
+                        pending[shard] = start(new ChunkTask(shard, (int) from, high, other));
+                    }
+                }
+                if (task.count > 0) {
+                    chunk = task.into;
+                    count = task.count;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Reads up to CURSOR_CHUNK jobs of one shard with key in [from, high] under its read lock
+         */
+        private final class ChunkTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final int shard;
+            private final int from;
+            private final int high;
+            final RBNode[] into;
+            int count = 0;//Jobs read, valid after join
+
+            ChunkTask(int shard, int from, int high, RBNode[] into) {
+                this.shard = shard;
+                this.from = from;
+                this.high = high;
+                this.into = into;
+            }
+
+            @Override
+            protected void compute() {
+                locks[shard].readLock().lock();
+                try {
+                    //Tasks of one shard never overlap, so its cursor is reused
+                    if (shardCursors[shard] == null) {
+                        shardCursors[shard] = shards[shard].newCursor();
+                    }
+                    RangeCursor cursor = shardCursors[shard].reset(from, high);
+                    while (count < into.length && cursor.hasNext()) {
+                        into[count++] = cursor.next();
+                    }
+                } finally {
+                    locks[shard].readLock().unlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    public int countInRange(int key1, int key2) {
+        if (key1 > key2) {
+            return 0;
+        }
+        int count = 0;
+        for (int s = shardOf(key1); s <= shardOf(key2); s++) {
+            locks[s].readLock().lock();
+            try {
+                count += shards[s].countInRange(key1, key2);
+            } finally {
+                locks[s].readLock().unlock();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int rank(int key) {
+        int s = shardOf(key);
+        int count = 0;
+        for (int i = 0; i < s; i++) {
+            count += shardSize(i);
+        }
+        locks[s].readLock().lock();
+        try {
+            return count + shards[s].rank(key);
+        } finally {
+            locks[s].readLock().unlock();
+        }
+    }
+
+    @Override
+    public RBNode select(int k) {
+        if (k < 1) {
+            return null;
+        }
+        for (int s = 0; s < shards.length; s++) {
+            locks[s].readLock().lock();
+            try {
+                int size = shards[s].size();
+                if (k <= size) {
+                    return shards[s].select(k);
+                }
+                k -= size;
+            } finally {
+                locks[s].readLock().unlock();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int s = 0; s < shards.length; s++) {
+            size += shardSize(s);
+        }
+        return size;
+    }
+
+    private int shardSize(int s) {
+        locks[s].readLock().lock();
+        try {
+            return shards[s].size();
+        } finally {
+            locks[s].readLock().unlock();
+        }
+    }
+
+    /**
+     * Lookups lock their own shards
+     */
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    /*---------------------------- Modifications ----------------------------*/
+
+    @Override
+    public void insertNode(RBNode p) {
+        int s = shardOf(p.key);
+        locks[s].writeLock().lock();
+        try {
+            shards[s].insertNode(p);
+        } finally {
+            locks[s].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sorted batch is cut into one run per shard, runs are inserted in parallel
+     */
+    @Override
+    public void insertAll(RBNode[] nodes, int n) {
+        List<InsertTask> tasks = new ArrayList<InsertTask>();
+        int start = 0;
+        while (start < n) {
+            int s = shardOf(nodes[start].key);
+            int end = start + 1;
+            while (end < n && shardOf(nodes[end].key) == s) {
+                end++;
+            }
+            RBNode[] run = new RBNode[end - start];
+            System.arraycopy(nodes, start, run, 0, run.length);
+            tasks.add(new InsertTask(s, run));
+            start = end;
+        }
+        if (tasks.size() == 1) {
+            tasks.get(0).compute();
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (InsertTask task : tasks) {
+                pool.execute(task);
+            }
+            for (InsertTask task : tasks) {
+                task.join();
+            }
+        }
+    }
+
+    /**
+     * Batch insert into one shard under its write lock
+     */
+    private final class InsertTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int shard;
+        private final RBNode[] run;
+
+        InsertTask(int shard, RBNode[] run) {
+            this.shard = shard;
+            this.run = run;
+        }
+
+        @Override
+        protected void compute() {
+            locks[shard].writeLock().lock();
+            try {
+                shards[shard].insertAll(run, run.length);
+            } finally {
+                locks[shard].writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(RBNode p) {
+        int s = shardOf(p.key);
+        locks[s].writeLock().lock();
+        try {
+            return shards[s].delete(p);
+        } finally {
+            locks[s].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(int key) {
+        int s = shardOf(key);
+        locks[s].writeLock().lock();
+        try {
+            return shards[s].delete(key);
+        } finally {
+            locks[s].writeLock().unlock();
+        }
+    }
+}
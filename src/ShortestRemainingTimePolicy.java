@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * Dispatch the job with least remaining time (total_time - executed_time), for a fixed quantum.
+ * Backed by a MinHeap ordered on remaining time instead of executed time.
+ * @author KUNWAR
+ */
+public class ShortestRemainingTimePolicy implements SchedulingPolicy {
+
+    /**
+     * MinHeap ordered on remaining time of job
+     */
+    private static class RemainingTimeHeap extends MinHeap {
+
+        RemainingTimeHeap(int d) {
+            super(d);
+        }
+
+        @Override
+        protected int priority(HeapNode p) {
+            return p.rbNode.totalTime - p.key;
+        }
+    }
+
+    private final MinHeap heap;
+    private final int quantum;
+
+    /**
+     * @param heapArity Number of children per heap node
+     * @param quantum Time slice in ms
+     */
+    public ShortestRemainingTimePolicy(int heapArity, int quantum) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be at least 1 ms: " + quantum);
+        }
+        this.heap = new RemainingTimeHeap(heapArity);
+        this.quantum = quantum;
+    }
+
+    public void add(HeapNode job) {
+        heap.insert(job);
+    }
+
+    public void addAll(HeapNode[] jobs, int n) {
+        heap.insertAll(jobs, n);
+    }
+
+    public void requeue(HeapNode job) {
+        heap.insert(job);
+    }
+
+    public HeapNode next() {
+        return heap.isEmpty() ? null : heap.extractMin();
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    public int size() {
+        return heap.size;
+    }
+
+    public int quantum(HeapNode job) {
+        return quantum;
+    }
+
+    public String settings() {
+        return "heapArity=" + heap.arity() + ",quantum=" + quantum;
+    }
+
+    /**
+     * Heap array order, where index already is the position
+     */
+    public HeapNode[] waitingJobs() {
+        return Arrays.copyOf(heap.arr, heap.size);
+    }
+
+    /**
+     * Floyd heapify leaves a valid heap array as it is, so the heap is rebuilt exactly, in linear time
+     */
+    public void restore(HeapNode[] jobs, int n) {
+        heap.insertAll(jobs, n);
+    }
+}
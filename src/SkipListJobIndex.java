@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free job index backed by a concurrent skip list.
+ * Lookups never block and scale with the number of reader threads, at the cost of
+ * order statistics, as the skip list keeps no subtree sizes: countInRange is O(m) in
+ * the number of jobs in the range, rank(key) is O(r) in the rank, select(k) is O(k),
+ * so all three are O(n) in the worst case, against O(log n) on the Red-Black tree.
+ * Prefer the rbtree, persistent or sharded index when these queries are frequent.
+ * @author KUNWAR
+ */
+public class SkipListJobIndex implements JobIndex {
+
+    private final ConcurrentSkipListMap<Integer, RBNode> map = new ConcurrentSkipListMap<Integer, RBNode>();
+    private final AtomicInteger size = new AtomicInteger();//map.size() is linear, so count separately
+
+    @Override
+    public RBNode search(int key) {
+        return map.get(key);
+    }
+
+    @Override
+    public RBNode greatestLessThanKey(int key) {
+        return value(map.lowerEntry(key));
+    }
+
+    @Override
+    public RBNode smallestGreaterThanK(int key) {
+        return value(map.higherEntry(key));
+    }
+
+    private static RBNode value(Map.Entry<Integer, RBNode> entry) {
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    public List<RBNode> searchInRange(int key1, int key2) {
+        return new ArrayList<RBNode>(range(key1, key2).values());
+    }
+
+    @Override
+    public Iterator<RBNode> rangeCursor(int key1, int key2) {
+        return range(key1, key2).values().iterator();
+    }
+
+    @Override
+    public JobCursor newCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks the range, O(m) in the number of jobs in it
+     */
+    @Override
+    public int countInRange(int key1, int key2) {
+        return range(key1, key2).size();
+    }
+
+    private ConcurrentNavigableMap<Integer, RBNode> range(int key1, int key2) {
+        if (key1 > key2) {
+            return new ConcurrentSkipListMap<Integer, RBNode>();
+        }
+        return map.subMap(key1, true, key2, true);
+    }
+
+    /**
+     * Walks all jobs up to key, O(rank)
+     */
+    @Override
+    public int rank(int key) {
+        return map.headMap(key, true).size();
+    }
+
+    /**
+     * Walks the first k jobs, O(k)
+     */
+    @Override
+    public RBNode select(int k) {
+        if (k < 1) {
+            return null;
+        }
+        for (RBNode node : map.values()) {
+            if (--k == 0) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void insertNode(RBNode p) {
+        if (map.put(p.key, p) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void insertAll(RBNode[] nodes, int n) {
+        for (int i = 0; i < n; i++) {
+            insertNode(nodes[i]);
+        }
+    }
+
+    @Override
+    public boolean delete(RBNode p) {
+        if (map.remove(p.key, p)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean delete(int key) {
+        if (map.remove(key) != null) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    /**
+     * Steps from key to key with ceilingKey and higherKey, which return the keys stored in
+     * the map, so a reused cursor needs no submap view or iterator per query
+     */
+    private final class Cursor implements JobCursor {
+
+        private Integer key;//Key of next job, null when done
+        private RBNode next;
+        private int high;
+
+        @Override
+        public Cursor reset(int low, int high) {
+            this.high = high;
+            key = low <= high ? map.ceilingKey(low) : null;
+            advance();
+            return this;
+        }
+
+        /**
+         * Move to the job of key, or a later one if it has just been deleted
+         */
+        private void advance() {
+            next = null;
+            while (key != null && key <= high) {
+                next = map.get(key);
+                if (next != null) {
+                    return;
+                }
+                key = map.higherKey(key);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public RBNode next() {
+            RBNode node = next;
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            key = map.higherKey(key);
+            advance();
+            return node;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.IOException;
+
+/**
+ * Job storage engine in which a job is identified by its slot (handle) instead of an
+ * RBNode/HeapNode pair, as used by the StoreScheduler. The same slots are kept in a
+ * Red-Black tree by jobID, with subtree sizes, and in a binary Min Heap by executed time,
+ * which breaks ties exactly as MinHeap does.
+ * Slot 0 (NIL) is the sentinel, returned wherever RedBlackTree returns null.
+ * @author KUNWAR
+ */
+public interface SlotStore {
+
+    int NIL = 0;
+
+    /**
+     * Allocate a slot for a new job, not yet in tree or heap
+     * @param id JobID
+     * @param total Total time of job
+     * @return slot of the job
+     * @throws IOException if the store cannot grow
+     */
+    int allocate(int id, int total) throws IOException;
+
+    /**
+     * Return a slot for reuse. Job must have been removed from tree and heap.
+     * @param s slot
+     */
+    void free(int s);
+
+    int jobId(int s);
+
+    int executedTime(int s);
+
+    int totalTime(int s);
+
+    /**
+     * Must not be called for a slot in heap
+     * @param s slot
+     * @param executed
+     */
+    void setExecutedTime(int s, int executed);
+
+    /**
+     * @return number of slots in tree
+     */
+    int treeSize();
+
+    /**
+     * @param key JobID
+     * @return slot of job or NIL
+     */
+    int search(int key);
+
+    /**
+     * @param key
+     * @return slot with greatest key less than parameter, or NIL
+     */
+    int greatestLessThanKey(int key);
+
+    /**
+     * @param key
+     * @return slot with smallest key greater than parameter, or NIL
+     */
+    int smallestGreaterThanK(int key);
+
+    /**
+     * @param key
+     * @return slot with smallest key not less than parameter, or NIL
+     */
+    int ceiling(int key);
+
+    /**
+     * In-order successor, used to walk a range: start at ceiling(low) and stop once jobId exceeds high
+     * @param x slot in tree
+     * @return next slot or NIL
+     */
+    int successor(int x);
+
+    /**
+     * @param key1
+     * @param key2
+     * @param out Receives slots with key in [key1, key2] in increasing key order, may be shorter than result
+     * @return number of slots in range
+     */
+    int searchInRange(int key1, int key2, int[] out);
+
+    /**
+     * @param key1
+     * @param key2
+     * @return number of slots with key in [key1, key2]
+     */
+    int countInRange(int key1, int key2);
+
+    /**
+     * @param key
+     * @return number of slots with key less than or equal to given key
+     */
+    int rank(int key);
+
+    /**
+     * @param k 1-based position
+     * @return slot with k-th smallest key, or NIL
+     */
+    int select(int k);
+
+    /**
+     * Inserts slot into tree by its jobID
+     * @param p slot
+     */
+    void insertNode(int p);
+
+    /**
+     * @param slots slots with distinct keys, sorted in increasing key order
+     * @param n number of slots in array to be inserted
+     */
+    void insertAll(int[] slots, int n);
+
+    /**
+     * Removes slot from tree. Slot is not freed.
+     * @param y slot in tree
+     */
+    void delete(int y);
+
+    boolean heapIsEmpty();
+
+    int heapSize();
+
+    /**
+     * Insert slot into heap keyed by its executed time
+     * @param s slot
+     */
+    void heapInsert(int s);
+
+    /**
+     * Same rule and tie order as MinHeap.insertAll
+     * @param slots
+     * @param n number of slots in array to be inserted
+     */
+    void heapInsertAll(int[] slots, int n);
+
+    /**
+     * @return slot with least executed time, removed from heap, or NIL if heap is empty
+     */
+    int extractMin();
+
+    /**
+     * @param s slot
+     * @return false if slot is not in heap
+     */
+    boolean heapRemove(int s);
+}
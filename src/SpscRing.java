@@ -0,0 +1,120 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring buffer between exactly one producer thread and one consumer thread.
+ * Slots are preallocated objects that are filled in place and passed around the ring,
+ * so nothing is allocated per item. The producer claims the next free slot, fills it and
+ * publishes it; the consumer takes the next published slot, reads it and releases it.
+ * Each side only writes its own counter, so no locks or compare-and-set are needed.
+ * A waiting side spins, then yields, then parks for short periods.
+ *
+ * Closing the ring by the producer marks the end of items, the consumer still gets all
+ * published ones. Closing by the consumer makes the producer stop waiting for space.
+ * @author KUNWAR
+ */
+public class SpscRing<T> {
+
+    private final T[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();//Slots released by consumer
+    private final AtomicLong tail = new AtomicLong();//Slots published by producer
+    private volatile boolean closed = false;
+
+    /**
+     * @param slots Preallocated slots, a power of two of them
+     */
+    public SpscRing(T[] slots) {
+        if (slots.length == 0 || (slots.length & (slots.length - 1)) != 0) {
+            throw new IllegalArgumentException("Number of slots must be a power of two: " + slots.length);
+        }
+        this.slots = slots;
+        mask = slots.length - 1;
+    }
+
+    /*------------------------------ Producer ------------------------------*/
+
+    /**
+     * Waits for a free slot
+     * @return slot to fill and publish, or null if the ring was closed
+     */
+    public T claim() {
+        long t = tail.get();
+        int spins = 0;
+        while (t - head.get() == slots.length) {
+            if (closed) {
+                return null;
+            }
+            spins = pause(spins);
+        }
+        return closed ? null : slots[(int) t & mask];
+    }
+
+    /**
+     * Hands the claimed slot to the consumer
+     */
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /**
+     * Waits until the consumer has released every published slot, or closed the ring
+     */
+    public void awaitEmpty() {
+        int spins = 0;
+        while (head.get() != tail.get() && !closed) {
+            spins = pause(spins);
+        }
+    }
+
+    /*------------------------------ Consumer ------------------------------*/
+
+    /**
+     * Waits for a published slot
+     * @return slot to read and release, or null if the ring is closed and every slot taken
+     */
+    public T take() {
+        long h = head.get();
+        int spins = 0;
+        while (h == tail.get()) {
+            if (closed) {
+                //Producer may have published just before closing
+                return h == tail.get() ? null : slots[(int) h & mask];
+            }
+            spins = pause(spins);
+        }
+        return slots[(int) h & mask];
+    }
+
+    /**
+     * Hands the taken slot back to the producer
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /*-------------------------------- Both --------------------------------*/
+
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Back off a little more on every call while waiting
+     * @param spins Calls so far
+     * @return spins for next call
+     */
+    private static int pause(int spins) {
+        if (spins > 200) {
+            LockSupport.parkNanos(20000);
+        }
+        else if (spins > 100) {
+            Thread.yield();
+        }
+        return spins + 1;
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Scheduling core of Scheduler, running on a SlotStore (JobStore or MappedJobStore) instead
+ * of RBNode/HeapNode objects. Jobs are slots of the store, processors are slots of parallel
+ * arrays. Dispatches the job with least executed time for a fixed quantum, with the same event
+ * driven time and the same heap tie breaking as Scheduler with its default index and policy, so replays give
+ * the same output. Other indexes and policies, metrics, logs and checkpoints work on node
+ * objects and are not offered here.
+ * Not thread safe, callers serialise access.
+ * @author KUNWAR
+ */
+public class StoreScheduler {
+
+    public final SlotStore store;//All jobs, in tree by jobID and waiting ones in heap
+    private final int quantum;
+    //Per processor, as the fields of Processor
+    private final int[] currentJob;//slot, NIL if idle
+    private final int[] currentSlotEndTime;
+    private final int[] currentJobCompletionTime;
+    private int t = 0;//Global time counter
+    public boolean debug = false;//set true for console outputs
+    private int[] batchSlots = new int[0];//Scratch space for insertJobs
+    private long[] batchKeys = new long[0];
+
+    /**
+     * @param store Job store, whose waiting jobs are dispatched first
+     * @param processors Number of simulated processors
+     * @param quantum Time slice in ms
+     */
+    public StoreScheduler(SlotStore store, int processors, int quantum) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be at least 1 ms: " + quantum);
+        }
+        this.store = store;
+        this.quantum = quantum;
+        currentJob = new int[processors];
+        currentSlotEndTime = new int[processors];
+        currentJobCompletionTime = new int[processors];
+    }
+
+    /**
+     * @return current global time
+     */
+    public int time() {
+        return t;
+    }
+
+    /**
+     * Allocate a slot for the job, then insert it in tree and heap
+     * @param id
+     * @param totTime
+     * @return slot of the job
+     * @throws IOException if the store cannot grow
+     */
+    public int insertJob(int id, int totTime) throws IOException {
+        if (debug) System.out.println("Inserting jobId:"+id+", total time:"+totTime);
+        int s = store.allocate(id, totTime);
+        store.insertNode(s);
+        store.heapInsert(s);
+        return s;
+    }
+
+    /**
+     * Slots for all jobs are allocated first, then added to the tree sorted by jobID and
+     * to the heap in input order, in bulk, as Scheduler.insertJobs does with nodes
+     * @param params pairs of jobID, total time
+     * @param paramCount
+     * @throws IOException if the store cannot grow
+     */
+    public void insertJobs(int[] params, int paramCount) throws IOException {
+        int n = paramCount / 2;
+        if (debug) System.out.println("Inserting batch of "+n+" jobs");
+        if (batchSlots.length < n) {
+            batchSlots = new int[n];
+            batchKeys = new long[n];
+        }
+        for (int i = 0; i < n; i++) {
+            int s = store.allocate(params[2*i], params[2*i + 1]);
+            batchSlots[i] = s;
+            //jobID in the high half, so sorting the longs sorts slots by jobID
+            batchKeys[i] = ((long) params[2*i] << 32) | s;
+        }
+        Arrays.sort(batchKeys, 0, n);
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = (int) batchKeys[i];
+        }
+        store.insertAll(sorted, n);
+        store.heapInsertAll(batchSlots, n);
+    }
+
+    /**
+     * @param s Slot of a job in tree
+     * @return true if job is currently executing on a processor
+     */
+    public boolean isRunning(int s) {
+        for (int job : currentJob) {
+            if (job == s) return true;
+        }
+        return false;
+    }
+
+    /**
+     * When all commands are processed but jobs still remain
+     */
+    public void executeRemainingJobs() {
+        while (!allIdle()){
+            if (debug) System.out.println("Time:" + t);
+            dispatchOrUpdateJobs();
+            incrementTime(allIdle() ? 1 : nextEventTime() - t);//Due events were just handled, so next one is ahead
+        }
+    }
+
+    /**
+     * Moves global time forward to the given time, jumping from one scheduler event to the next
+     * @param time Time to advance to
+     */
+    public void advanceTo(int time) {
+        while (t < time) {
+            if (debug) System.out.println("Time:" + t);
+            dispatchOrUpdateJobs();
+            if (allIdle()) {
+                //Processors idle, nothing can happen until next command
+                t = time;
+                return;
+            }
+            incrementTime(Math.min(nextEventTime(), time) - t);
+        }
+    }
+
+    public boolean allIdle() {
+        for (int job : currentJob) {
+            if (job != SlotStore.NIL) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Earliest time at which any processor will change its current job
+     * @return next event time, or Integer.MAX_VALUE if all processors are idle
+     */
+    public int nextEventTime() {
+        int eventTime = Integer.MAX_VALUE;
+        for (int p = 0; p < currentJob.length; p++) {
+            if (currentJob[p] != SlotStore.NIL) {
+                eventTime = Math.min(eventTime, Math.min(currentJobCompletionTime[p], currentSlotEndTime[p]));
+            }
+        }
+        return eventTime;
+    }
+
+    /**
+     * Increments both global time and executed time of current jobs
+     * @param delta Time elapsed
+     */
+    private void incrementTime(int delta) {
+        t += delta;
+        for (int job : currentJob) {
+            if (job != SlotStore.NIL) {
+                store.setExecutedTime(job, store.executedTime(job) + delta);
+            }
+        }
+    }
+
+    /**
+     * Update every processor at current time, in processor order
+     */
+    public void dispatchOrUpdateJobs() {
+        for (int p = 0; p < currentJob.length; p++) {
+            dispatchOrUpdateJob(p);
+        }
+    }
+
+    /**
+     * Heap gives the job with least executed time, which runs upto the quantum or upto
+     * its total execution time if it lies in current slot, else it is re-queued at the end
+     * of the slot. Events that are due, or overdue, at current time are handled now.
+     * @param p Processor to update
+     */
+    private void dispatchOrUpdateJob(int p) {
+        if (currentJob[p] != SlotStore.NIL){
+            if (currentJobCompletionTime[p] <= currentSlotEndTime[p]){
+                if (t < currentJobCompletionTime[p]) return;
+                complete(p);
+            }
+            else {
+                if (t < currentSlotEndTime[p]) return;
+                //Slot ends, re-queue job in heap and reset current job fields
+                store.heapInsert(currentJob[p]);
+                release(p);
+            }
+        }
+        //Processor is idle, so dispatch next job
+        while (currentJob[p] == SlotStore.NIL) {
+            if (store.heapIsEmpty()){
+                if (debug) System.out.println("No Job to dispatch on Processor:"+p);
+                return;
+            }
+            int s = store.extractMin();
+            currentJob[p] = s;
+            currentSlotEndTime[p] = t + quantum;
+            currentJobCompletionTime[p] = t + store.totalTime(s) - store.executedTime(s) -1;
+            if (debug) System.out.println("Dispatched Job:"+store.jobId(s)+" at time:"+t+" on Processor:"+p);
+            if (currentJobCompletionTime[p] <= t) {
+                //Nothing left to run, e.g. total time of 1 ms, so job completes at once
+                complete(p);
+            }
+        }
+    }
+
+    /**
+     * Job completed, so remove from tree, free its slot and reset current job fields
+     * @param p Processor running the job
+     */
+    private void complete(int p) {
+        int s = currentJob[p];
+        if (debug) System.out.println("Job Completed:"+store.jobId(s)+" at time"+t);
+        store.delete(s);
+        store.free(s);
+        release(p);
+    }
+
+    private void release(int p) {
+        currentJob[p] = SlotStore.NIL;
+        currentSlotEndTime[p] = 0;
+        currentJobCompletionTime[p] = 0;
+    }
+}
@@ -0,0 +1,346 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of job insertions and completions of a live scheduler.
+ * Records have a fixed size: type, time, jobID, total time and a CRC32 of these, so replay
+ * stops at the first record that was torn or damaged. Positions count record bytes since
+ * the log was created. Records before a checkpoint can be discarded, the file header then
+ * holds the position of the first record kept.
+ *
+ * Appending only copies the record into a memory buffer. sync makes all records up to a
+ * position durable with group commit: the first waiting thread becomes the leader, swaps
+ * the buffer for an empty one, writes it and forces the file once, while threads that
+ * arrive meanwhile keep appending to the new buffer and wait for the next force. So the
+ * number of forces grows with the number of waiting rounds, not with the number of records.
+ * @author KUNWAR
+ */
+public class WriteAheadLog implements Closeable {
+
+    //Record types
+    public static final byte INSERT = 1;
+    public static final byte COMPLETE = 2;
+
+    private static final int MAGIC = 0x4A53574C;//"JSWL"
+    private static final int HEADER_SIZE = 12;//magic, position of first record
+    private static final int RECORD_SIZE = 17;//type, time, jobID, total time, CRC32 of the others
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private FileChannel channel;//Replaced when records are discarded
+    private long start;//Position of first record in file
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_SIZE);//Records not yet handed to a leader
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);//Empty, swapped in by next leader
+    private long appended;//Log length including buffered records
+    private long durable;//Log length forced to disk
+    private boolean flushing = false;//A leader is writing
+    private IOException failure = null;//Set once a write or force has failed
+    private long forces = 0;
+
+    /**
+     * Open log, creating an empty one if needed. Call replay before appending to an existing log.
+     * @param file
+     * @throws IOException
+     */
+    public WriteAheadLog(File file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel, 0);
+                channel.force(false);
+            }
+            else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining()) {
+                    if (channel.read(header, header.position()) < 0) break;
+                }
+                header.flip();
+                if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                    throw new IOException(file + " is not a write-ahead log");
+                }
+                start = header.getLong();
+            }
+            appended = durable = start + channel.size() - HEADER_SIZE;
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void writeHeader(FileChannel out, long first) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(first).flip();
+        while (header.hasRemaining()) {
+            out.write(header, header.position());
+        }
+        out.position(HEADER_SIZE);
+    }
+
+    /**
+     * Buffer a record, which is durable once sync has been called with the returned position
+     * @param type INSERT or COMPLETE
+     * @param time
+     * @param jobId
+     * @param totalTime
+     * @return log length including this record
+     */
+    public synchronized long append(byte type, int time, int jobId, int totalTime) {
+        if (active.remaining() < RECORD_SIZE) {
+            ByteBuffer temp = ByteBuffer.allocate(active.capacity() * 2);
+            active.flip();
+            temp.put(active);
+            active = temp;
+        }
+        int at = active.position();
+        active.put(type).putInt(time).putInt(jobId).putInt(totalTime);
+        crc.reset();
+        crc.update(active.array(), at, RECORD_SIZE - 4);
+        active.putInt((int) crc.getValue());
+        appended += RECORD_SIZE;
+        return appended;
+    }
+
+    /**
+     * @return log length including buffered records
+     */
+    public synchronized long position() {
+        return appended;
+    }
+
+    /**
+     * @return number of times the file has been forced
+     */
+    public synchronized long forces() {
+        return forces;
+    }
+
+    /**
+     * Block until all records up to position are on disk
+     * @param position as returned by append
+     * @throws IOException if writing the log failed, now or earlier
+     */
+    public void sync(long position) throws IOException {
+        ByteBuffer batch;
+        long end;
+        FileChannel out;
+        synchronized (this) {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException("Write-ahead log failed", failure);
+                }
+                if (durable >= position) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for log sync");
+                }
+            }
+            //Become leader for everything appended so far
+            flushing = true;
+            batch = active;
+            active = spare;
+            end = appended;
+            out = channel;
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                out.write(batch);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            batch.clear();
+            spare = batch;
+            flushing = false;
+            if (error == null) {
+                durable = end;
+                forces++;
+            } else {
+                failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Drop records before a position, once a checkpoint taken there is saved, so the log only
+     * holds records since the last checkpoint. Records kept are copied to a new file, which
+     * then replaces the log atomically, so a crash leaves either the old or the new log.
+     * Appends go on meanwhile into the buffer, syncs wait until the file is replaced.
+     * @param position Log position of the checkpoint, already synced
+     * @throws IOException if the new file cannot be written, the old log is then kept
+     */
+    public void discardBefore(long position) throws IOException {
+        FileChannel old;
+        long end;
+        synchronized (this) {
+            while (flushing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for log sync");
+                }
+            }
+            if (failure != null) {
+                throw new IOException("Write-ahead log failed", failure);
+            }
+            if (position > durable) {
+                throw new IllegalArgumentException("Position " + position + " is not on disk yet, log is durable up to " + durable);
+            }
+            if (position <= start) {
+                return;
+            }
+            flushing = true;//No leader writes to the old file while it is copied
+            old = channel;
+            end = durable;
+        }
+        Path temp = new File(file.getPath() + ".tmp").toPath();
+        FileChannel copy = null;
+        try {
+            copy = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writeHeader(copy, position);
+            long from = HEADER_SIZE + position - start;
+            long count = end - position;
+            for (long copied = 0; copied < count; ) {
+                copied += old.transferTo(from + copied, count - copied, copy);
+            }
+            copy.force(false);
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (copy != null) copy.close();
+            synchronized (this) {
+                flushing = false;
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            channel = copy;
+            start = position;
+            flushing = false;
+            notifyAll();
+        }
+        old.close();
+    }
+
+    /**
+     * Apply records from offset onwards to a scheduler restored from a checkpoint taken at
+     * that offset, or to an empty one if offset is 0. Inserts are applied the way
+     * SchedulerService applies them, so the scheduler goes through the same states as
+     * before. Replay stops at the first record whose checksum does not match, such as a
+     * partly written one left by a crash, and the log is cut off there.
+     * @param scheduler
+     * @param offset Log position when checkpoint was taken
+     * @return number of records applied
+     * @throws IOException if a logged completion does not happen in the replay, or records
+     * from offset were discarded
+     */
+    public synchronized int replay(Scheduler scheduler, long offset) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % RECORD_SIZE);
+        long position = offset;
+        long size = start + channel.size() - HEADER_SIZE;
+        if (offset < start) {
+            throw new IOException("Log starts at " + start + ", records from checkpoint offset " + offset + " were discarded");
+        }
+        if (size < offset) {
+            throw new IOException("Log is shorter than checkpoint offset " + offset);
+        }
+        WriteAheadLog schedulerLog = scheduler.log;
+        scheduler.log = null;//Completions during replay are already in the log
+        try {
+            position = apply(scheduler, buf, position, size);
+        } finally {
+            scheduler.log = schedulerLog;
+        }
+        channel.truncate(HEADER_SIZE + position - start);
+        channel.position(HEADER_SIZE + position - start);
+        appended = durable = position;
+        return (int) ((position - offset) / RECORD_SIZE);
+    }
+
+    /**
+     * @return end of last record applied
+     */
+    private long apply(Scheduler scheduler, ByteBuffer buf, long position, long size) throws IOException {
+        read:
+        while (position + RECORD_SIZE <= size) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), (size - position) / RECORD_SIZE * RECORD_SIZE));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, HEADER_SIZE + position - start + buf.position()) < 0) break;
+            }
+            buf.flip();
+            while (buf.remaining() >= RECORD_SIZE) {
+                int at = buf.position();
+                byte type = buf.get();
+                int time = buf.getInt();
+                int jobId = buf.getInt();
+                int totalTime = buf.getInt();
+                int checksum = buf.getInt();
+                crc.reset();
+                crc.update(buf.array(), at, RECORD_SIZE - 4);
+                if (checksum != (int) crc.getValue()) {
+                    break read;//Torn or damaged record, nothing after it can be trusted
+                }
+                if (type == INSERT) {
+                    scheduler.advanceTo(time);
+                    scheduler.insertJob(jobId, totalTime);
+                    scheduler.dispatchOrUpdateJobs();
+                }
+                else if (type == COMPLETE) {
+                    //Completion at time c is logged while advancing past c
+                    scheduler.advanceTo(time + 1);
+                    if (scheduler.index.search(jobId) != null) {
+                        throw new IOException("Replay diverged from log: job " + jobId + " not completed at time " + time);
+                    }
+                }
+                else {
+                    throw new IOException("Unknown record type " + type + " at log position " + position);
+                }
+                position += RECORD_SIZE;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Make all appended records durable and close file
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync(position());
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,36 +1,48 @@
 import java.io.*;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Main executing class for scheduling jobs.
- * Uses Red-Black tree and Min-Heap
+ * Replays an input file of timed commands against a Scheduler,
+ * which uses Red-Black tree and Min-Heap
  * @author KUNWAR
  */
 public class jobscheduler {
 
-    private static String INPUT_FILE;
     private static final String OUT_FILE = "output_file.txt";
-    private RedBlackTree tree = new RedBlackTree();
-    private MinHeap heap = new MinHeap();
-    private FileWriter fileWriter;
-    private HeapNode currentJob=null;//Current Job being executed
-    private int t = 0;//Global time counter
-    private int currentSlotEndTime =0;//Time at which the 5s slot will end
-    private int currentJobCompletionTime = 0;//Time at which the current job being executed will end if continued indefinitely
+    //Simulated cores set with -Dprocessors=4, job index with -Dindex=skiplist, policy with -Dpolicy=srt -Dquantum=10
+    private Scheduler scheduler = new Scheduler(Integer.getInteger("processors", 1),
+            Scheduler.newPolicy(System.getProperty("policy"), Integer.getInteger("heapArity", 2), Integer.getInteger("quantum", 5)),
+            Scheduler.newIndex(System.getProperty("index"),
+                    Integer.getInteger("shards", Runtime.getRuntime().availableProcessors()), Integer.getInteger("maxJobId", 1000000)));
+    private JobIndex index = scheduler.index;
+    private JobCursor cursor = index.newCursor();//Reused by every PrintJob range
+    private OutputSink out;
     private boolean debug = false;//set true for console outputs
+    //Checkpoint every checkpointInterval lines to file given by -Dcheckpoint, continue from one with -Drestore
+    private String checkpointFile = System.getProperty("checkpoint");
+    private int checkpointInterval = Integer.getInteger("checkpointInterval", 1000000);
+    private String restoreFile = System.getProperty("restore");
+    //Answer queries between index changes in parallel with -DparallelQueries=true
+    private QueryBatch queries = null;
+    //Keep jobs in parallel arrays of a JobStore with -Dstore=arrays, or in a MappedJobStore file
+    //given by -DstoreFile with -Dstore=mapped, default index and policy only
+    private String storeName = System.getProperty("store");
 
     /**
-     * Accept input file name as argument
+     * Accept input file name as argument, the file is looked up on the classpath
      * @param args
      */
     public static void main(String[] args) {
 
-        INPUT_FILE = args[0];
-        jobscheduler jobscheduler = new jobscheduler();
-        jobscheduler.begin();
+        try {
+            URL path = ClassLoader.getSystemResource(args[0]);
+            jobscheduler jobscheduler = new jobscheduler();
+            jobscheduler.begin(new File(path.toURI()), OUT_FILE);
+        } catch (URISyntaxException e) {
+            e.printStackTrace();
+        }
 
     }
 
@@ -42,72 +54,107 @@ public class jobscheduler {
      * -In a unit of time, command will be processed and current job
      * will be updated, if needed.
      *
+     * @param inputFile Commands to replay
+     * @param outFile Name of file results are written to
      */
-    private void begin() {
-        BufferedReader br = null;
-        FileReader fr = null;
+    void begin(File inputFile, String outFile) {
+        if (storeName != null) {
+            beginOnStore(inputFile, outFile);
+            return;
+        }
+        CommandReader reader = null;
+        ParserStage parser = null;
 
         try {
 
-            URL path = ClassLoader.getSystemResource(INPUT_FILE);
-            fr = new FileReader(new File(path.toURI()));
-            br = new BufferedReader(fr);
-
-            fileWriter = new FileWriter(OUT_FILE);
+            reader = new CommandReader(inputFile);
 
-            String sCurrentLine;
-            String[] params;
-
-            while ((sCurrentLine = br.readLine()) != null) {
-                if (debug) System.out.println("Time:" + t);
-                if (debug) System.out.println(sCurrentLine);
-
-                //Sample Input: "13: PrintJob(10,300)"
-                Pattern p = Pattern.compile("(^\\d+): ([a-zA-Z]+)\\((.+)\\)");
-                Matcher m = p.matcher(sCurrentLine);
+            if (restoreFile != null) {
+                //Skip input already executed and output already written before checkpoint
+                Checkpoint checkpoint = Checkpoint.restore(new File(restoreFile), scheduler);
+                reader.seek(checkpoint.inputOffset);
+                out = new OutputSink(outFile, checkpoint.outputOffset);
+                if (debug) System.out.println("Restored checkpoint at time:" + checkpoint.time);
+            }
+            else {
+                out = new OutputSink(outFile);
+            }
+            if (Boolean.getBoolean("parallelQueries")) {
+                queries = new QueryBatch(scheduler, out, Integer.getInteger("queryBatch", 4096));
+                scheduler.queries = queries;
+            }
+            if (Boolean.getBoolean("pipeline")) {
+                //Parse on a parser thread and write on a writer thread, scheduling stays on this one
+                parser = new ParserStage(reader, 1 << 14);
+                parser.start();
+                out.startWriter(16);
+            }
+            scheduler.debug = debug;
+            if (Boolean.getBoolean("metrics")) scheduler.metrics = new SchedulerMetrics();
+            long lines = 0;
 
-                if (m.find()) {
-                    params = m.group(3).split(",");
-                    int cmdExecTime = Integer.parseInt(m.group(1));//Time at which next command will be executed
+            //Sample Input: "13: PrintJob(10,300)"
+            if (parser != null) {
+                ParserStage.Command c;
+                while ((c = parser.commands.take()) != null) {
+                    execute(c.time, c.command, c.params, c.paramCount);
+                    long position = c.position;
+                    parser.commands.release();
+                    if (checkpointFile != null && ++lines % checkpointInterval == 0) checkpoint(position);
+                }
+                parser.checkError();
+            }
+            else {
+                while (reader.next()) {
+                    execute(reader.time, reader.command, reader.params, reader.paramCount);
+                    if (checkpointFile != null && ++lines % checkpointInterval == 0) checkpoint(reader.position());
+                }
+            }
+            if (queries != null) queries.flush();
+            scheduler.executeRemainingJobs();//Case when all lines have been read but jobs are still waiting to be executed
+            if (scheduler.metrics != null) scheduler.metrics.report(System.out, scheduler.time());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        finally {
+            try {
+                if (out != null) out.close();
+                if (parser != null) parser.close();
+                if (reader != null) reader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-                    while (cmdExecTime != t){//If not global time, update current job and timings
-                        dispatchOrUpdateJob();
-                        incrementTime();
-                        if (debug) System.out.println("Time:" + t);
-                    }
+    /**
+     * Replays commands against a StoreScheduler instead of the Scheduler
+     * @param inputFile Commands to replay
+     * @param outFile Name of file results are written to
+     */
+    private void beginOnStore(File inputFile, String outFile) {
+        checkStoreOptions();
+        CommandReader reader = null;
+        SlotStore store = null;
 
-                    if (debug) System.out.println("Processing:" + m.group(1) +","+m.group(2));
-
-                    switch (m.group(2)) {
-                        case "Insert": {
-                            insertJob(params);
-                            break;
-                        }
-                        case "PrintJob": {
-                            printJob(params);
-                            break;
-                        }
-                        case "NextJob": {
-                            getNextJob(params);
-                            break;
-                        }
-                        case "PreviousJob": {
-                            getPreviousJob(params);
-                            break;
-                        }
-                    }
-                }
-                dispatchOrUpdateJob();
-                incrementTime();
+        try {
+            store = newStore();
+            StoreScheduler storeScheduler = new StoreScheduler(store, Integer.getInteger("processors", 1), Integer.getInteger("quantum", 5));
+            reader = new CommandReader(inputFile);
+            out = new OutputSink(outFile);
+            storeScheduler.debug = debug;
+            while (reader.next()) {
+                executeOnStore(storeScheduler, reader.time, reader.command, reader.params, reader.paramCount);
             }
-            executeRemainingJobs();//Case when all lines have been read but jobs are still waiting to be executed
+            storeScheduler.executeRemainingJobs();
         } catch (Exception e) {
             e.printStackTrace();
         }
         finally {
             try {
-                fileWriter.close();
-                fr.close();
+                if (out != null) out.close();
+                if (reader != null) reader.close();
+                if (store instanceof MappedJobStore) ((MappedJobStore) store).close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -115,13 +162,186 @@ public class jobscheduler {
     }
 
     /**
-     * Searches tree for greatest job ID less than given job ID and prints output
+     * The replay starts at time 0, so a mapped store file left by an earlier run is emptied
+     * @return store named by -Dstore
+     * @throws IOException
+     */
+    private SlotStore newStore() throws IOException {
+        if ("mapped".equals(storeName)) {
+            File file = new File(System.getProperty("storeFile", "jobs.store"));
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot empty " + file);
+            }
+            return new MappedJobStore(file);
+        }
+        return new JobStore();
+    }
+
+    /**
+     * Store engines run the least executed time policy on a binary heap, and jobs are no
+     * RBNode/HeapNode objects, so options built on those are refused rather than ignored
+     */
+    private void checkStoreOptions() {
+        if (!"arrays".equals(storeName) && !"mapped".equals(storeName)) {
+            throw new IllegalArgumentException("Unknown store: " + storeName);
+        }
+        String policy = System.getProperty("policy");
+        if (policy != null && !"least".equals(policy)) {
+            throw new IllegalArgumentException("store=" + storeName + " does not support policy=" + policy);
+        }
+        if (Integer.getInteger("heapArity", 2) != 2) {
+            throw new IllegalArgumentException("store=" + storeName + " only supports heapArity=2");
+        }
+        for (String option : new String[]{"index", "checkpoint", "restore"}) {
+            if (System.getProperty(option) != null) {
+                throw new IllegalArgumentException("store=" + storeName + " does not support " + option);
+            }
+        }
+        for (String option : new String[]{"parallelQueries", "pipeline", "metrics"}) {
+            if (Boolean.getBoolean(option)) {
+                throw new IllegalArgumentException("store=" + storeName + " does not support " + option);
+            }
+        }
+    }
+
+    /**
+     * Executes one decoded input line on a store, as execute does on the Scheduler
+     * @param storeScheduler
+     * @param time Time at which command is to be executed
+     * @param command Command code from CommandReader
+     * @param params
+     * @param paramCount Number of valid params
+     * @throws IOException
+     */
+    private void executeOnStore(StoreScheduler storeScheduler, int time, int command, int[] params, int paramCount) throws IOException {
+        SlotStore store = storeScheduler.store;
+
+        if (command != CommandReader.INVALID) {
+            storeScheduler.advanceTo(time);
+
+            switch (command) {
+                case CommandReader.INSERT: {
+                    storeScheduler.insertJob(params[0], params[1]);
+                    break;
+                }
+                case CommandReader.PRINT_JOB: {
+                    if (paramCount == 1) {
+                        printSlot(store, store.search(params[0]));
+                    }
+                    else {
+                        printSlots(store, params[0], params[1]);
+                    }
+                    break;
+                }
+                case CommandReader.NEXT_JOB: {
+                    printSlot(store, store.smallestGreaterThanK(params[0]));
+                    break;
+                }
+                case CommandReader.PREVIOUS_JOB: {
+                    printSlot(store, store.greatestLessThanKey(params[0]));
+                    break;
+                }
+                case CommandReader.COUNT_JOBS: {
+                    out.writeInt(store.countInRange(params[0], params[1]));
+                    out.writeNewLine();
+                    break;
+                }
+                case CommandReader.RANK_JOB: {
+                    out.writeInt(store.rank(params[0]));
+                    out.writeNewLine();
+                    break;
+                }
+                case CommandReader.SELECT_JOB: {
+                    printSlot(store, store.select(params[0]));
+                    break;
+                }
+                case CommandReader.INSERT_BATCH: {
+                    storeScheduler.insertJobs(params, paramCount);
+                    break;
+                }
+            }
+        }
+        storeScheduler.advanceTo(storeScheduler.time() + 1);
+    }
+
+    /**
+     * Executes one decoded input line
+     * @param time Time at which command is to be executed
+     * @param command Command code from CommandReader
      * @param params
+     * @param paramCount Number of valid params
+     * @throws IOException
+     */
+    private void execute(int time, int command, int[] params, int paramCount) throws IOException {
+        if (debug) System.out.println("Time:" + scheduler.time());
+
+        if (command != CommandReader.INVALID) {
+            scheduler.advanceTo(time);//If not global time, jump to it updating current job and timings
+
+            if (debug) System.out.println("Processing:" + time +","+command);
+
+            if (queries != null && QueryBatch.isQuery(command)) {
+                //Answered later, together with other queries up to the next index change
+                queries.add(command, params, paramCount);
+            }
+            else {
+                switch (command) {
+                    case CommandReader.INSERT: {
+                        scheduler.insertJob(params[0], params[1]);
+                        break;
+                    }
+                    case CommandReader.PRINT_JOB: {
+                        printJob(params, paramCount);
+                        break;
+                    }
+                    case CommandReader.NEXT_JOB: {
+                        getNextJob(params[0]);
+                        break;
+                    }
+                    case CommandReader.PREVIOUS_JOB: {
+                        getPreviousJob(params[0]);
+                        break;
+                    }
+                    case CommandReader.COUNT_JOBS: {
+                        countJobs(params[0], params[1]);
+                        break;
+                    }
+                    case CommandReader.RANK_JOB: {
+                        rankJob(params[0]);
+                        break;
+                    }
+                    case CommandReader.SELECT_JOB: {
+                        selectJob(params[0]);
+                        break;
+                    }
+                    case CommandReader.INSERT_BATCH: {
+                        scheduler.insertJobs(params, paramCount);
+                        break;
+                    }
+                }
+            }
+        }
+        scheduler.advanceTo(scheduler.time() + 1);
+    }
+
+    /**
+     * Writes a checkpoint after all output so far has reached the output file
+     * @param inputPosition Offset of the next input line
      * @throws IOException
      */
-    private void getPreviousJob(String[] params) throws IOException {
-        int jobId = Integer.parseInt(params[0]);
-        RBNode node = tree.greatestLessThanKey(jobId);
+    private void checkpoint(long inputPosition) throws IOException {
+        if (queries != null) queries.flush();
+        out.flush();
+        Checkpoint.save(new File(checkpointFile), scheduler, inputPosition, out.position());
+    }
+
+    /**
+     * Searches tree for greatest job ID less than given job ID and prints output
+     * @param jobId
+     * @throws IOException
+     */
+    private void getPreviousJob(int jobId) throws IOException {
+        RBNode node = index.greatestLessThanKey(jobId);
         if (node == null){
             printEmpty();
         }
@@ -132,12 +352,11 @@ public class jobscheduler {
 
     /**
      * Searches tree for smallest jobID but greater than given jobID and prints output
-     * @param params
+     * @param jobId
      * @throws IOException
      */
-    private void getNextJob(String[] params) throws IOException {
-        int jobId = Integer.parseInt(params[0]);
-        RBNode node = tree.smallestGreaterThanK(jobId);
+    private void getNextJob(int jobId) throws IOException {
+        RBNode node = index.smallestGreaterThanK(jobId);
         if (node == null){
             printEmpty();
         }
@@ -147,72 +366,38 @@ public class jobscheduler {
     }
 
     /**
-     * When all commands are processed but jobs still remain
+     * Prints number of jobs with jobID in [jobId1, jobId2]
+     * @param jobId1
+     * @param jobId2
      * @throws IOException
      */
-    private void executeRemainingJobs() throws IOException {
-        while (currentJob != null){
-            if (debug) System.out.println("Time:" + t);
-            dispatchOrUpdateJob();
-            incrementTime();
-        }
+    private void countJobs(int jobId1, int jobId2) throws IOException {
+        out.writeInt(index.countInRange(jobId1, jobId2));
+        out.writeNewLine();
     }
 
     /**
-     * Increments both global time and current job executed time
+     * Prints number of jobs with jobID less than or equal to given jobID
+     * @param jobId
+     * @throws IOException
      */
-    private void incrementTime() {
-        t++;
-        if (currentJob != null) {
-            currentJob.key = currentJob.key + 1;
-        }
+    private void rankJob(int jobId) throws IOException {
+        out.writeInt(index.rank(jobId));
+        out.writeNewLine();
     }
 
     /**
-     * In heap, the keys are executed times of all jobs. So, extract min will
-     * output the job that will be of least executed time. This job will run
-     * upto 5 ms or upto it's total execution time if it lies in current slot.
-     * Otherwise, we will re-insert the job in heap at the end of current slot.
-     *
+     * Prints the job with k-th smallest jobID, empty tuple if there are fewer jobs
+     * @param k 1-based position
      * @throws IOException
      */
-    private void dispatchOrUpdateJob() throws IOException {
-        if (currentJob == null){
-            if (heap.isEmpty()){
-                if (debug) System.out.println("No Job to dispatch!");
-                return;
-            }
-            else {
-                currentJob = heap.extractMin();
-
-                currentSlotEndTime = t+5;
-                currentJobCompletionTime = t + currentJob.rbNode.totalTime - currentJob.key -1;
-                if (debug) System.out.println("Dispatched Job:"+currentJob.rbNode.key+" at time:"+t);
-            }
+    private void selectJob(int k) throws IOException {
+        RBNode node = index.select(k);
+        if (node == null){
+            printEmpty();
         }
         else {
-            if (currentJobCompletionTime <= currentSlotEndTime){
-                if (t == currentJobCompletionTime){
-                    //Job completed, so remove from tree and reset current job fields
-                    if (debug) System.out.println("Job Completed:"+currentJob.rbNode.key+" at time"+t);
-                    tree.delete(currentJob.rbNode);
-                    currentJob = null;
-                    currentSlotEndTime = 0;
-                    currentJobCompletionTime = 0;
-                    dispatchOrUpdateJob();//recur to dispatch next job as processor is idle
-                }
-            }
-            else {
-                //Slot ends
-                if (t == currentSlotEndTime){
-                    //re-insert job in heap and reset current job fields
-                    heap.insert(currentJob);
-                    currentJob = null;
-                    currentSlotEndTime = 0;
-                    currentJobCompletionTime = 0;
-                    dispatchOrUpdateJob();//recur to dispatch next job as processor is idle
-                }
-            }
+            printJobInFormat(node);
         }
     }
 
@@ -221,13 +406,14 @@ public class jobscheduler {
      * if cmd of form PrintJob(jobId), search for jobID. If found, print in format, else print empty tuple
      * if cmd of form PrintJob(jobId1, jobId2), searches for jobIDs in given range.
      * @param params
+     * @param paramCount Number of valid params
      * @throws IOException
      */
-    private void printJob(String[] params) throws IOException {
+    private void printJob(int[] params, int paramCount) throws IOException {
 
-        if (params.length == 1){
-            int jobId = Integer.parseInt(params[0]);
-            RBNode rbNode = tree.search(jobId);
+        if (paramCount == 1){
+            int jobId = params[0];
+            RBNode rbNode = index.search(jobId);
             if (rbNode == null) {
                 printEmpty();
             }
@@ -236,18 +422,19 @@ public class jobscheduler {
             }
         }
         else {
-            int jobId1 = Integer.parseInt(params[0]);
-            int jobId2 = Integer.parseInt(params[1]);
-            List<RBNode> list = tree.searchInRange(jobId1, jobId2);//Search in tree
-
-            if (!list.isEmpty()){
-                StringBuilder sb = new StringBuilder();
-                for (RBNode node: list){
-                    sb.append("("+node.key+","+node.heapNode.key+","+node.totalTime + "),");
+            int jobId1 = params[0];
+            int jobId2 = params[1];
+            cursor.reset(jobId1, jobId2);//Search in index, streaming matches straight to output
+
+            if (cursor.hasNext()){
+                RBNode node = cursor.next();
+                out.writeJob(node.key, node.heapNode.key, node.totalTime);
+                while (cursor.hasNext()){
+                    node = cursor.next();
+                    out.writeComma();
+                    out.writeJob(node.key, node.heapNode.key, node.totalTime);
                 }
-                sb.deleteCharAt(sb.length()-1);//remove last comma
-                sb.append("\n");
-                fileWriter.write(sb.toString());
+                out.writeNewLine();
             }
             else {
                 printEmpty();
@@ -255,42 +442,57 @@ public class jobscheduler {
         }
     }
 
-    private void printEmpty() throws IOException {
-        fileWriter.write("(0,0,0)\n");
+    /**
+     * Prints job in a store slot, empty tuple for NIL
+     * @param store
+     * @param s
+     * @throws IOException
+     */
+    private void printSlot(SlotStore store, int s) throws IOException {
+        if (s == SlotStore.NIL) {
+            printEmpty();
+        }
+        else {
+            out.writeJob(store.jobId(s), store.executedTime(s), store.totalTime(s));
+            out.writeNewLine();
+        }
     }
 
     /**
-     * If job to be printed is being executed, then the executed time needs to be fetched from current job
-     * Else heap node pointer to the red-black node will give the executed time
-     * @param node
+     * Prints jobs of a store with jobID in [jobId1, jobId2], walking the tree in order
+     * @param store
+     * @param jobId1
+     * @param jobId2
      * @throws IOException
      */
-    private void printJobInFormat(RBNode node) throws IOException {
-        if (node.key == currentJob.rbNode.key){
-            fileWriter.write("("+node.key+","+currentJob.key+","+node.totalTime + ")\n");
+    private void printSlots(SlotStore store, int jobId1, int jobId2) throws IOException {
+        int s = store.ceiling(jobId1);
+        if (s == SlotStore.NIL || store.jobId(s) > jobId2) {
+            printEmpty();
+            return;
         }
-        else {
-            fileWriter.write("(" + node.key + "," + node.heapNode.key + "," + node.totalTime + ")\n");
+        out.writeJob(store.jobId(s), store.executedTime(s), store.totalTime(s));
+        for (s = store.successor(s); s != SlotStore.NIL && store.jobId(s) <= jobId2; s = store.successor(s)) {
+            out.writeComma();
+            out.writeJob(store.jobId(s), store.executedTime(s), store.totalTime(s));
         }
+        out.writeNewLine();
+    }
+
+    private void printEmpty() throws IOException {
+        out.writeEmpty();
     }
 
     /**
-     * Process insert job command.
-     * Create red-black and min-heap nodes and point to each other
-     * Then insert in tree and heap
-     * @param params
+     * Heap node pointer of the red-black node gives the executed time. For a job being
+     * executed on any processor this is the current job itself, whose executed time has
+     * been brought up to date when time was advanced to this command
+     * @param node
+     * @throws IOException
      */
-    private void insertJob(String[] params) {
-        int id = Integer.parseInt(params[0]);
-        int totTime = Integer.parseInt(params[1]);
-        if (debug) System.out.println("Inserting jobId:"+id+", total time:"+totTime);
-        RBNode rbNode = new RBNode(id);
-        rbNode.totalTime = totTime;
-        HeapNode heapNode = new HeapNode(0);
-        rbNode.heapNode = heapNode;
-        heapNode.rbNode = rbNode;
-        tree.insertNode(rbNode);
-        heap.insert(heapNode);
+    private void printJobInFormat(RBNode node) throws IOException {
+        out.writeJob(node.key, node.heapNode.key, node.totalTime);
+        out.writeNewLine();
     }
 
 }
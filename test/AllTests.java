@@ -0,0 +1,44 @@
+/**
+ * Runs every test, from the project directory:
+ * javac -d out src/*.java bench/*.java test/*.java
+ * java -cp out AllTests
+ * @author KUNWAR
+ */
+public class AllTests {
+
+    public static void main(String[] args) throws Exception {
+        String[] none = new String[0];
+        FixtureTest.main(none);
+        System.out.println("FixtureTest OK");
+        CommandReaderTest.main(none);
+        System.out.println("CommandReaderTest OK");
+        OutputSinkTest.main(none);
+        System.out.println("OutputSinkTest OK");
+        MinHeapTest.main(none);
+        System.out.println("MinHeapTest OK");
+        RedBlackTreeTest.main(none);
+        System.out.println("RedBlackTreeTest OK");
+        PersistentRedBlackTreeTest.main(none);
+        System.out.println("PersistentRedBlackTreeTest OK");
+        JobIndexTest.main(none);
+        System.out.println("JobIndexTest OK");
+        BucketQueueTest.main(none);
+        System.out.println("BucketQueueTest OK");
+        CheckpointTest.main(none);
+        System.out.println("CheckpointTest OK");
+        SchedulerServiceTest.main(none);
+        System.out.println("SchedulerServiceTest OK");
+        SpscRingTest.main(none);
+        System.out.println("SpscRingTest OK");
+        WriteAheadLogTest.main(none);
+        System.out.println("WriteAheadLogTest OK");
+        SchedulerMetricsTest.main(none);
+        System.out.println("SchedulerMetricsTest OK");
+        TraceGeneratorTest.main(none);
+        System.out.println("TraceGeneratorTest OK");
+        JobStoreTest.main(none);
+        System.out.println("JobStoreTest OK");
+        MappedJobStoreTest.main(none);
+        System.out.println("MappedJobStoreTest OK");
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * BucketQueue against a priority queue ordered by key, then by insertion, so jobs with equal
+ * executed time must come out first come first served. Keys are drawn both close to the least
+ * one, as with round robin, and far above it, so the window moves down and jobs pass through
+ * overflow.
+ * @author KUNWAR
+ */
+public class BucketQueueTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(22);
+        for (int round = 0; round < 200; round++) {
+            replay(random, 1 + random.nextInt(200), 1 + random.nextInt(3000));
+        }
+        largeKeys();
+    }
+
+    private static void replay(Random random, int window, int spread) {
+        BucketQueue queue = new BucketQueue(window);
+        PriorityQueue<HeapNode> reference = new PriorityQueue<HeapNode>(11, new Comparator<HeapNode>() {
+            @Override
+            public int compare(HeapNode a, HeapNode b) {
+                return a.key != b.key ? Integer.compare(a.key, b.key) : Integer.compare(a.index, b.index);
+            }
+        });
+        int seq = 0;
+        for (int op = 0; op < 2000; op++) {
+            if (random.nextInt(3) > 0 || reference.isEmpty()) {
+                HeapNode p = new HeapNode(0);
+                int min = reference.isEmpty() ? 0 : reference.peek().key;
+                switch (random.nextInt(4)) {
+                    case 0: p.key = 0; break;//New job
+                    case 1: p.key = min + random.nextInt(8); break;//Requeued after a slice
+                    default: p.key = random.nextInt(spread); break;
+                }
+                p.index = seq++;//Insertion order
+                queue.insert(p);
+                reference.add(p);
+            }
+            else {
+                HeapNode want = reference.poll();
+                Check.check(queue.extractMin() == want, "extractMin of key " + want.key);
+            }
+            Check.equal(reference.size(), queue.size, "size");
+            if (op % 97 == 0) {
+                HeapNode[] jobs = queue.toArray();
+                PriorityQueue<HeapNode> copy = new PriorityQueue<HeapNode>(reference);
+                for (HeapNode p : jobs) {
+                    Check.check(p == copy.poll(), "toArray order");
+                }
+            }
+        }
+        while (!reference.isEmpty()) {
+            Check.check(queue.extractMin() == reference.poll(), "draining");
+        }
+        Check.check(queue.isEmpty() && queue.extractMin() == null, "empty after draining");
+    }
+
+    /**
+     * A long job with an executed time far above the window must not need buckets up to its key
+     */
+    private static void largeKeys() {
+        BucketQueue queue = new BucketQueue(64);
+        HeapNode old = new HeapNode(2000000000);
+        queue.insert(old);
+        for (int k = 0; k < 1000; k += 5) {
+            HeapNode p = new HeapNode(k);
+            queue.insert(p);
+            Check.check(queue.extractMin() == p, "new job first");
+        }
+        Check.check(queue.extractMin() == old, "long job last");
+        Check.check(queue.isEmpty(), "empty");
+        HeapNode top = new HeapNode(Integer.MAX_VALUE);
+        queue.insert(top);
+        queue.insert(new HeapNode(Integer.MAX_VALUE - 1));
+        Check.equal(Integer.MAX_VALUE - 1, queue.extractMin().key, "key next to the largest");
+        Check.check(queue.extractMin() == top, "largest key");
+    }
+}
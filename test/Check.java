@@ -0,0 +1,33 @@
+/**
+ * Assertions for the tests, which run as plain main methods without a test framework.
+ * A failed check throws AssertionError, whether or not the JVM runs with -ea.
+ * @author KUNWAR
+ */
+public class Check {
+
+    public static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public static void equal(long expected, long actual, String what) {
+        if (expected != actual) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    public static void equal(Object expected, Object actual, String what) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * @param job Node found by a lookup, or null
+     * @return its key, or Integer.MIN_VALUE for null, to compare lookups of two indexes
+     */
+    public static int key(RBNode job) {
+        return job == null ? Integer.MIN_VALUE : job.key;
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Checkpoints taken while jobs run, with every policy, restore to a scheduler that goes on to
+ * make exactly the same dispatches and completions as the original. Restoring under another
+ * heap arity, quantum, policy or number of processors is refused.
+ * @author KUNWAR
+ */
+public class CheckpointTest {
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("checkpoint", ".ckp");
+        try {
+            for (String policy : new String[]{"least", "srt", "mlfq", "bucket"}) {
+                roundTrip(file, policy);
+                mismatch(file, policy);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Scheduler newScheduler(int processors, String policy, int heapArity, int quantum) {
+        return new Scheduler(processors, Scheduler.newPolicy(policy, heapArity, quantum), new RedBlackTree());
+    }
+
+    private static void roundTrip(File file, String policy) throws IOException {
+        Scheduler original = newScheduler(3, policy, 4, 7);
+        for (int id = 0; id < 200; id++) {
+            original.advanceTo(id * 3);
+            original.insertJob(id * 5 + 1, 1 + (id * 37) % 90);
+        }
+        original.advanceTo(700);
+        Checkpoint.save(file, original, 123, 456);
+
+        Scheduler restored = newScheduler(3, policy, 4, 7);
+        Checkpoint checkpoint = Checkpoint.restore(file, restored);
+        Check.equal(700, checkpoint.time, policy + " time");
+        Check.equal(123, checkpoint.inputOffset, policy + " input offset");
+        Check.equal(456, checkpoint.outputOffset, policy + " output offset");
+        //Both must now run the same schedule, step by step
+        for (int time = 700; !original.allIdle() || !restored.allIdle(); time += 11) {
+            same(original, restored, policy + " at " + time);
+            original.advanceTo(time);
+            restored.advanceTo(time);
+        }
+        same(original, restored, policy + " at end");
+    }
+
+    private static void same(Scheduler a, Scheduler b, String what) {
+        Check.equal(a.time(), b.time(), what + " time");
+        Check.equal(a.index.size(), b.index.size(), what + " jobs");
+        Check.equal(a.index.size(), b.jobCount(), what + " jobs counted");
+        Check.equal(a.policy.size(), b.policy.size(), what + " waiting jobs");
+        for (int p = 0; p < a.processors.length; p++) {
+            HeapNode x = a.processors[p].currentJob;
+            HeapNode y = b.processors[p].currentJob;
+            Check.equal(x == null ? -1 : x.rbNode.key, y == null ? -1 : y.rbNode.key, what + " job on processor " + p);
+            Check.equal(a.processors[p].currentSlotEndTime, b.processors[p].currentSlotEndTime, what + " slot end on " + p);
+        }
+        RangeCursor cursor = ((RedBlackTree) b.index).newCursor().reset(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        for (RBNode x : a.index.searchInRange(Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+            RBNode y = cursor.next();
+            Check.equal(x.key, y.key, what + " jobID");
+            Check.equal(x.heapNode.key, y.heapNode.key, what + " executed time of " + x.key);
+            Check.equal(x.totalTime, y.totalTime, what + " total time of " + x.key);
+        }
+    }
+
+    private static void mismatch(File file, String policy) throws IOException {
+        Scheduler original = newScheduler(2, policy, 2, 5);
+        original.insertJob(1, 50);
+        original.insertJob(2, 60);
+        original.advanceTo(3);
+        Checkpoint.save(file, original, 0, 0);
+        refused(file, newScheduler(2, policy, 2, 6), policy + " with other quantum");
+        refused(file, newScheduler(3, policy, 2, 5), policy + " with other number of processors");
+        refused(file, newScheduler(2, "least".equals(policy) ? "srt" : "least", 2, 5), policy + " with other policy");
+        if (!"mlfq".equals(policy) && !"bucket".equals(policy)) {
+            refused(file, newScheduler(2, policy, 3, 5), policy + " with other heap arity");
+        }
+        Checkpoint.restore(file, newScheduler(2, policy, 2, 5));
+    }
+
+    private static void refused(File file, Scheduler scheduler, String what) {
+        try {
+            Checkpoint.restore(file, scheduler);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError(what + " was restored");
+    }
+}
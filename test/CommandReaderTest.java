@@ -0,0 +1,73 @@
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * CommandReader decodes every command, with LF or CRLF line ends, reports malformed lines as
+ * INVALID and unknown names as UNKNOWN, and continues from a saved position after seek.
+ * @author KUNWAR
+ */
+public class CommandReaderTest {
+
+    public static void main(String[] args) throws Exception {
+        String input = "0: Insert(5,25)\r\n"
+                + "12: PrintJob(5)\n"
+                + "13: PrintJob(-3,30)\r\n"
+                + "14: NextJob(5)\n"
+                + "15: PreviousJob(5)\n"
+                + "16: CountJobs(1,9)\n"
+                + "17: RankJob(5)\n"
+                + "18: SelectJob(1)\n"
+                + "19: InsertBatch(1,2,3,4,5,6,7,8)\n"
+                + "20: Frobnicate(1)\n"
+                + "21 Insert(1,2)\n"
+                + "22: Insert(1,x)\n"
+                + "\n"
+                + "2147483000: PrintJob(2147483647)";//No line end at end of file
+        File file = File.createTempFile("commands", ".txt");
+        try {
+            Files.write(file.toPath(), input.getBytes());
+            CommandReader reader = new CommandReader(file);
+            try {
+                expect(reader, 0, CommandReader.INSERT, 5, 25);
+                expect(reader, 12, CommandReader.PRINT_JOB, 5);
+                long saved = reader.position();
+                expect(reader, 13, CommandReader.PRINT_JOB, -3, 30);
+                expect(reader, 14, CommandReader.NEXT_JOB, 5);
+                expect(reader, 15, CommandReader.PREVIOUS_JOB, 5);
+                expect(reader, 16, CommandReader.COUNT_JOBS, 1, 9);
+                expect(reader, 17, CommandReader.RANK_JOB, 5);
+                expect(reader, 18, CommandReader.SELECT_JOB, 1);
+                expect(reader, 19, CommandReader.INSERT_BATCH, 1, 2, 3, 4, 5, 6, 7, 8);
+                expect(reader, 20, CommandReader.UNKNOWN, 1);
+                Check.check(reader.next(), "line without colon");
+                Check.equal(CommandReader.INVALID, reader.command, "line without colon");
+                Check.check(reader.next(), "bad argument");
+                Check.equal(CommandReader.INVALID, reader.command, "bad argument");
+                Check.equal(0, reader.paramCount, "arguments of bad line");
+                Check.check(reader.next(), "empty line");
+                Check.equal(CommandReader.INVALID, reader.command, "empty line");
+                expect(reader, 2147483000, CommandReader.PRINT_JOB, 2147483647);
+                Check.check(!reader.next(), "end of file");
+
+                reader.seek(saved);
+                expect(reader, 13, CommandReader.PRINT_JOB, -3, 30);
+                Check.equal(input.indexOf("14:"), reader.position(), "position after seek");
+            } finally {
+                reader.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void expect(CommandReader reader, int time, int command, int... params) throws Exception {
+        String what = "line at " + time;
+        Check.check(reader.next(), what + " missing");
+        Check.equal(time, reader.time, what + " time");
+        Check.equal(command, reader.command, what + " command");
+        Check.equal(params.length, reader.paramCount, what + " number of arguments");
+        for (int i = 0; i < params.length; i++) {
+            Check.equal(params[i], reader.params[i], what + " argument " + i);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays every input under src/fixtures and compares output_file contents with the
+ * expected output next to it (name.expected), under each set of options that must not
+ * change the output. Options the fixture itself needs, e.g. processors=3, are listed
+ * one per line in name.options and apply to every run. A replay that does not finish
+ * within the time limit fails.
+ * @author KUNWAR
+ */
+public class FixtureTest {
+
+    private static final long TIME_LIMIT_MS = 60000;
+    private static final File STORE_FILE = new File(System.getProperty("java.io.tmpdir"), "fixture.store");
+
+    //Options given as system properties, none of which may change output
+    private static final String[][] OPTIONS = {
+            {},
+            {"index=skiplist"},
+            {"index=persistent"},
+            {"index=sharded", "shards=3", "maxJobId=60"},//Some jobs in every shard, larger IDs in last one
+            {"parallelQueries=true"},
+            {"parallelQueries=true", "queryBatch=2", "index=skiplist"},//Full batches answered early
+            {"pipeline=true"},
+            {"pipeline=true", "parallelQueries=true"},
+            {"store=arrays"},//Only with the default policy
+            {"store=mapped", "storeFile=" + STORE_FILE.getPath()},
+    };
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(args.length > 0 ? args[0] : "src/fixtures");
+        File[] inputs = dir.listFiles();
+        Check.check(inputs != null, "No fixtures in " + dir);
+        Arrays.sort(inputs);
+        int runs = 0;
+        for (File input : inputs) {
+            File expected = new File(dir, input.getName() + ".expected");
+            if (!expected.exists()) {
+                continue;
+            }
+            File own = new File(dir, input.getName() + ".options");
+            List<String> fixed = own.exists() ? Files.readAllLines(own.toPath()) : new ArrayList<String>();
+            //Stores only run the default policy on a binary heap
+            String settings = String.join(",", fixed);
+            boolean nodesOnly = settings.contains("policy=") || settings.contains("heapArity=");
+            for (String[] options : OPTIONS) {
+                if (options.length > 0 && options[0].startsWith("store=") && nodesOnly) {
+                    continue;
+                }
+                List<String> all = new ArrayList<String>(fixed);
+                all.addAll(Arrays.asList(options));
+                replay(input, expected, all.toArray(new String[all.size()]));
+                runs++;
+            }
+        }
+        Check.check(runs > 0, "No fixtures with expected output in " + dir);
+        STORE_FILE.delete();
+    }
+
+    private static void replay(File input, final File expected, String[] options) throws Exception {
+        final File output = File.createTempFile("fixture", ".txt");
+        try {
+            for (String option : options) {
+                String[] pair = option.split("=");
+                System.setProperty(pair[0], pair[1]);
+            }
+            final jobscheduler scheduler = new jobscheduler();
+            final File in = input;
+            Thread replay = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    scheduler.begin(in, output.getPath());
+                }
+            }, "replay");
+            replay.setDaemon(true);
+            replay.start();
+            replay.join(TIME_LIMIT_MS);
+            String name = input.getName() + " " + Arrays.toString(options);
+            Check.check(!replay.isAlive(), name + " did not finish within " + TIME_LIMIT_MS + " ms");
+            compare(expected, output, name);
+        } finally {
+            for (String option : options) {
+                System.clearProperty(option.split("=")[0]);
+            }
+            output.delete();
+        }
+    }
+
+    private static void compare(File expected, File actual, String name) throws IOException {
+        List<String> want = Files.readAllLines(expected.toPath());
+        List<String> got = Files.readAllLines(actual.toPath());
+        for (int i = 0; i < Math.min(want.size(), got.size()); i++) {
+            Check.equal(want.get(i), got.get(i), name + " line " + (i + 1));
+        }
+        Check.equal(want.size(), got.size(), name + " number of lines");
+    }
+}
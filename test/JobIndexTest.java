@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Every JobIndex against a TreeSet of jobIDs, under random inserts, batch inserts and deletes:
+ * lookups, next and previous job, range reports, new and reused cursors, counts, rank and select.
+ * Ranges are wide enough to span several shards of a sharded index and several cursor chunks.
+ * @author KUNWAR
+ */
+public class JobIndexTest {
+
+    public static void main(String[] args) {
+        check("rbt", new RedBlackTree());
+        check("skiplist", new SkipListJobIndex());
+        check("persistent", new PersistentRedBlackTree());
+        check("sharded", new ShardedJobIndex(4, 2000));
+        check("sharded, IDs past maxJobId", new ShardedJobIndex(3, 50));
+    }
+
+    private static void check(String name, JobIndex index) {
+        Random random = new Random(5);
+        TreeSet<Integer> reference = new TreeSet<Integer>();
+        JobCursor reused = index.newCursor();//Reset for every query
+        for (int op = 0; op < 4000; op++) {
+            int kind = random.nextInt(10);
+            if (kind < 4) {
+                int key = random.nextInt(3000) - 50;
+                if (reference.add(key)) {
+                    index.insertNode(Scheduler.newJob(key, 1));
+                }
+            } else if (kind < 5) {
+                //Sorted batch of new keys
+                TreeSet<Integer> batch = new TreeSet<Integer>();
+                int start = random.nextInt(3000);
+                for (int i = 0; i < 600; i++) {
+                    int key = start + random.nextInt(800);
+                    if (!reference.contains(key)) batch.add(key);
+                }
+                RBNode[] nodes = new RBNode[batch.size()];
+                int n = 0;
+                for (int key : batch) {
+                    nodes[n++] = Scheduler.newJob(key, 1);
+                }
+                index.insertAll(nodes, n);
+                reference.addAll(batch);
+            } else if (kind < 8 && !reference.isEmpty()) {
+                Integer key = reference.ceiling(random.nextInt(3000) - 50);
+                if (key == null) key = reference.first();
+                reference.remove(key);
+                boolean deleted = random.nextBoolean() ? index.delete(key) : index.delete(index.search(key));
+                Check.check(deleted, name + " delete " + key);
+                Check.check(!index.delete(key), name + " delete missing " + key);
+            } else {
+                queries(name, index, reused, reference, random);
+            }
+            Check.equal(reference.size(), index.size(), name + " size");
+        }
+    }
+
+    private static void queries(String name, JobIndex index, JobCursor reused, TreeSet<Integer> reference, Random random) {
+        int key = random.nextInt(3200) - 100;
+        Check.equal(reference.contains(key) ? key : Integer.MIN_VALUE, Check.key(index.search(key)), name + " search " + key);
+        Integer lower = reference.lower(key);
+        Integer higher = reference.higher(key);
+        Check.equal(lower == null ? Integer.MIN_VALUE : lower, Check.key(index.greatestLessThanKey(key)), name + " previous " + key);
+        Check.equal(higher == null ? Integer.MIN_VALUE : higher, Check.key(index.smallestGreaterThanK(key)), name + " next " + key);
+        Check.equal(reference.headSet(key, true).size(), index.rank(key), name + " rank " + key);
+        int k = random.nextInt(reference.size() + 2);
+        Integer kth = k >= 1 && k <= reference.size() ? new ArrayList<Integer>(reference).get(k - 1) : null;
+        Check.equal(kth == null ? Integer.MIN_VALUE : kth, Check.key(index.select(k)), name + " select " + k);
+
+        int high = key + random.nextInt(2500) - 200;//Sometimes empty, with high below key
+        List<Integer> want = new ArrayList<Integer>(key <= high ? reference.subSet(key, true, high, true) : new TreeSet<Integer>());
+        Check.equal(want.size(), index.countInRange(key, high), name + " count");
+        String range = "[" + key + ", " + high + "]";
+        Check.equal(want, keys(index.searchInRange(key, high).iterator()), name + " range " + range);
+        Check.equal(want, keys(index.rangeCursor(key, high)), name + " cursor " + range);
+        //Left part way, possibly with chunks still being read, then reset
+        JobCursor partial = reused.reset(key, high);
+        for (int i = random.nextInt(600); i > 0 && partial.hasNext(); i--) {
+            partial.next();
+        }
+        Check.equal(want, keys(reused.reset(key, high)), name + " reused cursor " + range);
+    }
+
+    private static List<Integer> keys(Iterator<RBNode> jobs) {
+        List<Integer> keys = new ArrayList<Integer>();
+        while (jobs.hasNext()) {
+            keys.add(jobs.next().key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * JobStore tree against a TreeMap of jobIDs under random inserts, batch inserts and deletes,
+ * and JobStore heap against a binary MinHeap fed the same executed times, which must give
+ * out jobs with equal executed time in the same order, so that StoreScheduler dispatches
+ * exactly as Scheduler does. Slots are freed and reused throughout.
+ * @author KUNWAR
+ */
+public class JobStoreTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(6);
+        for (int round = 0; round < 50; round++) {
+            tree(random);
+        }
+        for (int round = 0; round < 50; round++) {
+            heap(random);
+        }
+    }
+
+    private static void tree(Random random) {
+        JobStore store = new JobStore(4);
+        TreeMap<Integer, Integer> reference = new TreeMap<Integer, Integer>();//jobID to slot
+        int bound = 1 + random.nextInt(2000);
+        for (int op = 0; op < 1000; op++) {
+            int r = random.nextInt(10);
+            if (r < 5) {
+                int id = random.nextInt(bound);
+                if (!reference.containsKey(id)) {
+                    int s = store.allocate(id, 1 + id);
+                    store.insertNode(s);
+                    reference.put(id, s);
+                }
+            }
+            else if (r < 6) {
+                //Sorted batch of new IDs, small ones go one by one and large ones rebuild the tree
+                int n = random.nextInt(random.nextBoolean() ? 4 : 400);
+                List<Integer> ids = new ArrayList<Integer>();
+                for (int i = 0; i < n; i++) {
+                    int id = random.nextInt(bound);
+                    if (!reference.containsKey(id) && !ids.contains(id)) {
+                        ids.add(id);
+                    }
+                }
+                Collections.sort(ids);
+                int[] slots = new int[ids.size()];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = store.allocate(ids.get(i), 1 + ids.get(i));
+                    reference.put(ids.get(i), slots[i]);
+                }
+                store.insertAll(slots, slots.length);
+            }
+            else if (!reference.isEmpty()) {
+                Integer id = reference.ceilingKey(random.nextInt(bound));
+                if (id == null) {
+                    id = reference.firstKey();
+                }
+                int s = reference.remove(id);
+                store.delete(s);
+                store.free(s);
+            }
+            Check.equal(reference.size(), store.treeSize(), "tree size");
+            queries(store, reference, random.nextInt(bound + 2) - 1, random.nextInt(bound + 2) - 1);
+        }
+        Check.equal(0, store.select(reference.size() + 1), "select past last");
+        Check.equal(0, store.select(0), "select 0");
+    }
+
+    private static void queries(JobStore store, TreeMap<Integer, Integer> reference, int key, int key2) {
+        Check.equal(slot(reference.get(key)), store.search(key), "search " + key);
+        Check.equal(slot(reference.lowerKey(key) == null ? null : reference.get(reference.lowerKey(key))),
+                store.greatestLessThanKey(key), "previous " + key);
+        Check.equal(slot(reference.higherKey(key) == null ? null : reference.get(reference.higherKey(key))),
+                store.smallestGreaterThanK(key), "next " + key);
+        Check.equal(slot(reference.ceilingKey(key) == null ? null : reference.get(reference.ceilingKey(key))),
+                store.ceiling(key), "ceiling " + key);
+        Check.equal(reference.headMap(key, true).size(), store.rank(key), "rank " + key);
+        int low = Math.min(key, key2);
+        int high = Math.max(key, key2);
+        Check.equal(reference.subMap(low, true, high, true).size(), store.countInRange(low, high), "count " + low + " " + high);
+        Check.equal(0, store.countInRange(high + 1, low), "count of empty range");
+        int[] out = new int[8];
+        int count = store.searchInRange(low, high, out);
+        Check.equal(reference.subMap(low, true, high, true).size(), count, "range size");
+        int i = 0;
+        for (int s : reference.subMap(low, true, high, true).values()) {
+            if (i < out.length) {
+                Check.equal(s, out[i], "range slot " + i);
+            }
+            i++;
+        }
+        if (!reference.isEmpty()) {
+            int k = 1 + Math.abs(key) % reference.size();
+            int want = new ArrayList<Integer>(reference.values()).get(k - 1);
+            Check.equal(want, store.select(k), "select " + k);
+        }
+    }
+
+    private static long slot(Integer s) {
+        return s == null ? JobStore.NIL : s;
+    }
+
+    /**
+     * Slots and HeapNodes of the same jobs go through the same inserts, batch inserts,
+     * removals and requeues, with executed times from a small range so ties are frequent
+     */
+    private static void heap(Random random) {
+        JobStore store = new JobStore(1);
+        MinHeap heap = new MinHeap(2);
+        Map<HeapNode, Integer> slotOf = new HashMap<HeapNode, Integer>();
+        int spread = 1 + random.nextInt(20);
+        int id = 0;
+        for (int op = 0; op < 1000; op++) {
+            int r = random.nextInt(10);
+            if (r < 4) {
+                int key = random.nextInt(spread);
+                int s = store.allocate(id++, 100);
+                store.setExecutedTime(s, key);
+                HeapNode p = new HeapNode(key);
+                slotOf.put(p, s);
+                store.heapInsert(s);
+                heap.insert(p);
+            }
+            else if (r < 5) {
+                int n = random.nextInt(random.nextBoolean() ? 3 : 300);
+                int[] slots = new int[n];
+                HeapNode[] nodes = new HeapNode[n];
+                for (int i = 0; i < n; i++) {
+                    int key = random.nextInt(spread);
+                    slots[i] = store.allocate(id++, 100);
+                    store.setExecutedTime(slots[i], key);
+                    nodes[i] = new HeapNode(key);
+                    slotOf.put(nodes[i], slots[i]);
+                }
+                store.heapInsertAll(slots, n);
+                heap.insertAll(nodes, n);
+            }
+            else if (r < 6 && !heap.isEmpty()) {
+                HeapNode p = heap.arr[random.nextInt(heap.size)];
+                int s = slotOf.get(p);
+                Check.check(heap.remove(p), "removed from MinHeap");
+                Check.check(store.heapRemove(s), "removed from store heap");
+                Check.check(!store.heapRemove(s), "removed twice");
+                store.free(s);
+            }
+            else if (!heap.isEmpty()) {
+                //Like a slot end: take the least executed job, run it and put it back
+                HeapNode p = heap.extractMin();
+                int s = store.extractMin();
+                Check.equal((long) slotOf.get(p), s, "extractMin of key " + p.key);
+                p.key += random.nextInt(6);
+                store.setExecutedTime(s, p.key);
+                heap.insert(p);
+                store.heapInsert(s);
+            }
+            Check.equal(heap.size, store.heapSize(), "heap size");
+        }
+        while (!heap.isEmpty()) {
+            Check.equal((long) slotOf.get(heap.extractMin()), store.extractMin(), "draining");
+        }
+        Check.check(store.heapIsEmpty() && store.extractMin() == JobStore.NIL, "empty after draining");
+    }
+}
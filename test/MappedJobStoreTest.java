@@ -0,0 +1,193 @@
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * MappedJobStore against a JobStore given the same operations, which must hand out the same
+ * slots and answer every query the same, across growth past one mapped chunk, a clean close
+ * and reopen, and a crash image whose links are garbage, from which every live job is recovered.
+ * @author KUNWAR
+ */
+public class MappedJobStoreTest {
+
+    //File layout, as in MappedJobStore
+    private static final int HEADER_SIZE = 64;
+    private static final int H_ROOT = 4;
+    private static final int H_CLEAN = 24;
+    private static final int RECORD_SIZE = 40;
+    private static final int LEFT = 12;
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("jobs", ".store");
+        try {
+            file.delete();
+            lockstep(file);
+            crash(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Random inserts, batch inserts, completions and slot ends on both stores, then reopen
+     */
+    private static void lockstep(File file) throws Exception {
+        Random random = new Random(20);
+        JobStore arrays = new JobStore();
+        MappedJobStore mapped = new MappedJobStore(file);
+        Check.check(!mapped.wasRecovered(), "new store recovered");
+        int id = 0;
+        for (int op = 0; op < 20000; op++) {
+            int r = random.nextInt(10);
+            if (r < 3 || arrays.heapIsEmpty()) {
+                id += 1 + random.nextInt(3);
+                int s = arrays.allocate(id, 100);
+                Check.equal(s, mapped.allocate(id, 100), "allocated slot");
+                arrays.insertNode(s);
+                mapped.insertNode(s);
+                arrays.heapInsert(s);
+                mapped.heapInsert(s);
+            }
+            else if (r < 4) {
+                int n = random.nextInt(random.nextBoolean() ? 3 : 3000);
+                int[] slots = new int[n];
+                for (int i = 0; i < n; i++) {
+                    id += 1 + random.nextInt(3);
+                    slots[i] = arrays.allocate(id, 100);
+                    Check.equal(slots[i], mapped.allocate(id, 100), "allocated batch slot");
+                }
+                arrays.insertAll(slots, n);
+                mapped.insertAll(slots, n);
+                arrays.heapInsertAll(slots, n);
+                mapped.heapInsertAll(slots, n);
+            }
+            else if (r < 6) {
+                //Job completes
+                int s = arrays.extractMin();
+                Check.equal(s, mapped.extractMin(), "extractMin");
+                arrays.delete(s);
+                mapped.delete(s);
+                arrays.free(s);
+                mapped.free(s);
+            }
+            else {
+                //Slot ends
+                int s = arrays.extractMin();
+                Check.equal(s, mapped.extractMin(), "extractMin");
+                int executed = arrays.executedTime(s) + random.nextInt(6);
+                arrays.setExecutedTime(s, executed);
+                mapped.setExecutedTime(s, executed);
+                arrays.heapInsert(s);
+                mapped.heapInsert(s);
+            }
+            if (op % 50 == 0) {
+                same(arrays, mapped, random.nextInt(id + 2), random.nextInt(id + 2));
+            }
+        }
+        mapped.close();
+        mapped = new MappedJobStore(file);
+        Check.check(!mapped.wasRecovered(), "closed store recovered");
+        for (int k = 0; k < 100; k++) {
+            same(arrays, mapped, random.nextInt(id + 2), random.nextInt(id + 2));
+        }
+        while (!arrays.heapIsEmpty()) {
+            Check.equal(arrays.extractMin(), mapped.extractMin(), "draining reopened heap");
+        }
+        Check.check(mapped.heapIsEmpty(), "reopened heap drained");
+        mapped.close();
+    }
+
+    private static void same(JobStore arrays, MappedJobStore mapped, int key, int key2) {
+        Check.equal(arrays.treeSize(), mapped.treeSize(), "tree size");
+        Check.equal(arrays.heapSize(), mapped.heapSize(), "heap size");
+        Check.equal(arrays.search(key), mapped.search(key), "search " + key);
+        Check.equal(arrays.ceiling(key), mapped.ceiling(key), "ceiling " + key);
+        Check.equal(arrays.greatestLessThanKey(key), mapped.greatestLessThanKey(key), "previous " + key);
+        Check.equal(arrays.smallestGreaterThanK(key), mapped.smallestGreaterThanK(key), "next " + key);
+        Check.equal(arrays.rank(key), mapped.rank(key), "rank " + key);
+        Check.equal(arrays.select(key % (arrays.treeSize() + 2)), mapped.select(key % (arrays.treeSize() + 2)), "select");
+        int low = Math.min(key, key2);
+        int high = Math.max(key, key2);
+        Check.equal(arrays.countInRange(low, high), mapped.countInRange(low, high), "count " + low + " " + high);
+        int[] a = new int[16];
+        int[] m = new int[16];
+        Check.equal(arrays.searchInRange(low, high, a), mapped.searchInRange(low, high, m), "range size");
+        for (int i = 0; i < a.length; i++) {
+            Check.equal(a[i], m[i], "range slot " + i);
+        }
+        int s = arrays.search(key);
+        if (s != SlotStore.NIL) {
+            Check.equal(arrays.executedTime(s), mapped.executedTime(s), "executed time");
+            Check.equal(arrays.totalTime(s), mapped.totalTime(s), "total time");
+        }
+    }
+
+    /**
+     * Jobs are inserted, some complete and some are running, then the file is left as after a
+     * crash: not marked closed, with the root and tree links of records overwritten
+     */
+    private static void crash(File file) throws Exception {
+        file.delete();
+        MappedJobStore store = new MappedJobStore(file);
+        List<Integer> live = new ArrayList<Integer>();
+        for (int id = 1; id <= 500; id++) {
+            int s = store.allocate(id * 10, id);
+            store.insertNode(s);
+            store.heapInsert(s);
+        }
+        for (int i = 0; i < 100; i++) {
+            int s = store.extractMin();
+            store.delete(s);
+            store.free(s);
+        }
+        int running = store.extractMin();
+        store.setExecutedTime(running, 7);
+        for (int id = 1; id <= 500; id++) {
+            if (store.search(id * 10) != SlotStore.NIL) {
+                live.add(id * 10);
+            }
+        }
+        int used = store.treeSize() + 101;
+        store.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(H_CLEAN);
+            raf.writeInt(0);
+            raf.seek(H_ROOT);
+            raf.writeInt(Integer.reverseBytes(3));
+            for (int s = 1; s < used; s += 3) {
+                raf.seek(HEADER_SIZE + (long) s * RECORD_SIZE + LEFT);
+                raf.writeInt(Integer.reverseBytes(s + 1));
+            }
+        } finally {
+            raf.close();
+        }
+
+        store = new MappedJobStore(file);
+        Check.check(store.wasRecovered(), "crashed store recovered");
+        Check.equal(live.size(), store.treeSize(), "live jobs");
+        Check.equal(live.size(), store.heapSize(), "running job back in heap");
+        for (int k = 0; k < live.size(); k++) {
+            Check.equal((long) live.get(k), store.jobId(store.select(k + 1)), "select " + (k + 1));
+            Check.equal(k + 1, store.rank(live.get(k)), "rank");
+        }
+        Check.equal(7, store.executedTime(store.search(store.jobId(running))), "executed time of running job");
+        int last = -1;
+        while (!store.heapIsEmpty()) {
+            int executed = store.executedTime(store.extractMin());
+            Check.check(executed >= last, "heap order");
+            last = executed;
+        }
+        //Freed slots are reused before the file grows
+        for (int i = 0; i < 100; i++) {
+            Check.check(store.allocate(1, 1) < used, "free slot reused");
+        }
+        store.close();
+        store = new MappedJobStore(file);
+        Check.check(!store.wasRecovered(), "store closed after recovery");
+        store.close();
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * MinHeap of several arities against a list of the nodes it should hold, under random insert,
+ * batch insert, extractMin, remove, decreaseKey and increaseKey. After every step each node must
+ * sit at its stored position and no node may have a smaller key than its parent.
+ * @author KUNWAR
+ */
+public class MinHeapTest {
+
+    public static void main(String[] args) {
+        check(new MinHeap(), 2, new Random(4));
+        for (int d : new int[]{3, 4, 8}) {
+            check(new MinHeap(d), d, new Random(d));
+        }
+        //Subclass ordered on another priority
+        ShortestRemainingTimePolicy srt = new ShortestRemainingTimePolicy(4, 5);
+        HeapNode[] jobs = new HeapNode[100];
+        for (int i = 0; i < jobs.length; i++) {
+            RBNode node = new RBNode(i, new HeapNode(0));
+            node.totalTime = 1 + (i * 53) % 100;
+            node.heapNode.rbNode = node;
+            jobs[i] = node.heapNode;
+        }
+        srt.addAll(jobs, jobs.length);
+        for (int remaining = 1; !srt.isEmpty(); remaining++) {
+            HeapNode job = srt.next();
+            Check.equal(remaining, job.rbNode.totalTime - job.key, "remaining time order");
+        }
+    }
+
+    private static void check(MinHeap heap, int d, Random random) {
+        List<HeapNode> nodes = new ArrayList<HeapNode>();
+        for (int op = 0; op < 20000; op++) {
+            int kind = nodes.size() > 500 ? 4 : random.nextInt(10);//Keep heap small enough to check after every step
+            if (kind < 3 || nodes.isEmpty()) {
+                HeapNode p = new HeapNode(random.nextInt(1000));
+                heap.insert(p);
+                nodes.add(p);
+            } else if (kind < 4) {
+                //Small batches are inserted one by one, large ones heapified with the heap
+                int n = random.nextInt(3) == 0 ? 1 + random.nextInt(2 * heap.size + 10) : 1 + random.nextInt(3);
+                HeapNode[] batch = new HeapNode[n];
+                for (int i = 0; i < n; i++) {
+                    batch[i] = new HeapNode(random.nextInt(1000));
+                    nodes.add(batch[i]);
+                }
+                heap.insertAll(batch, n);
+            } else if (kind < 5) {
+                HeapNode min = heap.extractMin();
+                Check.equal(minKey(nodes), min.key, "extractMin");
+                Check.check(nodes.remove(min), "extracted node was in heap");
+                Check.equal(-1, min.index, "position of extracted node");
+            } else if (kind < 6) {
+                HeapNode p = nodes.remove(random.nextInt(nodes.size()));
+                Check.check(heap.remove(p), "remove");
+                Check.check(!heap.remove(p), "remove twice");
+            } else if (kind < 8) {
+                HeapNode p = nodes.get(random.nextInt(nodes.size()));
+                heap.decreaseKey(p, p.key - random.nextInt(p.key + 1));
+            } else {
+                HeapNode p = nodes.get(random.nextInt(nodes.size()));
+                heap.increaseKey(p, p.key + random.nextInt(500));
+            }
+            verify(heap, d, nodes.size());
+        }
+        HeapNode p = nodes.get(0);
+        try {
+            heap.decreaseKey(p, p.key + 1);
+            throw new AssertionError("decreaseKey to a larger key was accepted");
+        } catch (IllegalArgumentException expected) {
+            //Key must not grow
+        }
+        while (!nodes.isEmpty()) {
+            HeapNode min = heap.extractMin();
+            Check.equal(minKey(nodes), min.key, "draining");
+            nodes.remove(min);
+        }
+        Check.check(heap.isEmpty(), "empty after draining");
+    }
+
+    private static int minKey(List<HeapNode> nodes) {
+        int min = Integer.MAX_VALUE;
+        for (HeapNode p : nodes) {
+            min = Math.min(min, p.key);
+        }
+        return min;
+    }
+
+    private static void verify(MinHeap heap, int d, int size) {
+        Check.equal(size, heap.size, "size");
+        for (int i = 0; i < heap.size; i++) {
+            Check.equal(i, heap.arr[i].index, "stored position");
+            if (i > 0) {
+                Check.check(heap.arr[(i - 1) / d].key <= heap.arr[i].key, "heap order at " + i);
+            }
+        }
+    }
+}
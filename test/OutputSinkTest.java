@@ -0,0 +1,81 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * OutputSink formats triplets like String.valueOf, across many buffers, with and without a
+ * writer thread, appends in-memory sinks small and large in order, and continues a file
+ * from an offset by cutting off what follows it.
+ * @author KUNWAR
+ */
+public class OutputSinkTest {
+
+    private static final int[] VALUES = {0, 7, -7, 10, 999, 1000000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("sink", ".txt");
+        try {
+            for (int writerBuffers : new int[]{0, 2, 8}) {
+                write(file, writerBuffers);
+            }
+            resume(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void write(File file, int writerBuffers) throws Exception {
+        StringBuilder want = new StringBuilder();
+        OutputSink out = new OutputSink(file.getPath());
+        if (writerBuffers > 0) {
+            out.startWriter(writerBuffers);
+        }
+        for (int i = 0; i < 30000; i++) {
+            int a = VALUES[i % VALUES.length];
+            int b = i;
+            int c = -i;
+            out.writeJob(a, b, c);
+            out.writeNewLine();
+            want.append('(').append(a).append(',').append(b).append(',').append(c).append(")\n");
+            if (i % 1000 == 0) {
+                out.writeEmpty();
+                want.append("(0,0,0)\n");
+                //In-memory sink, every other one larger than a buffer
+                OutputSink memory = new OutputSink();
+                int lines = i % 2000 == 0 ? 10000 : 3;
+                for (int k = 0; k < lines; k++) {
+                    memory.writeInt(k);
+                    memory.writeComma();
+                    memory.writeInt(-k);
+                    memory.writeNewLine();
+                    want.append(k).append(',').append(-k).append('\n');
+                }
+                out.writeSink(memory);
+                Check.equal(0, memory.position(), "in-memory sink emptied");
+            }
+            Check.equal(want.length(), out.position(), "position");
+        }
+        out.close();
+        Check.equal(want.toString(), new String(Files.readAllBytes(file.toPath())), "output with " + writerBuffers + " writer buffers");
+    }
+
+    private static void resume(File file) throws Exception {
+        OutputSink out = new OutputSink(file.getPath());
+        out.writeJob(1, 2, 3);
+        out.writeNewLine();
+        long offset = out.position();
+        out.writeJob(4, 5, 6);
+        out.close();
+        out = new OutputSink(file.getPath(), offset);
+        Check.equal(offset, out.position(), "position after resume");
+        out.writeEmpty();
+        out.close();
+        Check.equal("(1,2,3)\n(0,0,0)\n", new String(Files.readAllBytes(file.toPath())), "resumed output");
+        try {
+            new OutputSink(file.getPath(), 1000).close();
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError("offset past end of file was accepted");
+    }
+}
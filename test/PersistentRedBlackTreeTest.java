@@ -0,0 +1,41 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A persistent tree snapshot, and a cursor opened before later changes, keep seeing the
+ * version they started on, while the tree and the snapshot change independently.
+ * @author KUNWAR
+ */
+public class PersistentRedBlackTreeTest {
+
+    public static void main(String[] args) {
+        PersistentRedBlackTree tree = new PersistentRedBlackTree();
+        List<Integer> before = new ArrayList<Integer>();
+        for (int key = 0; key < 1000; key += 2) {
+            tree.insertNode(Scheduler.newJob(key, 1));
+            before.add(key);
+        }
+        PersistentRedBlackTree snapshot = tree.snapshot();
+        Iterator<RBNode> cursor = tree.rangeCursor(0, 1000);
+        for (int key = 0; key < 1000; key += 4) {
+            tree.delete(key);
+            tree.insertNode(Scheduler.newJob(key + 1, 1));
+        }
+        snapshot.insertNode(Scheduler.newJob(2000, 1));
+        Check.equal(before, keys(cursor), "cursor opened before changes");
+        Check.equal(before.size() + 1, snapshot.size(), "snapshot size");
+        Check.equal(before, keys(snapshot.rangeCursor(0, 1000)), "snapshot after changes to tree");
+        Check.equal(before.size(), tree.size(), "tree size");
+        Check.check(tree.search(2000) == null, "change to snapshot seen in tree");
+        Check.check(tree.search(0) == null && tree.search(1) != null, "tree after changes");
+    }
+
+    private static List<Integer> keys(Iterator<RBNode> jobs) {
+        List<Integer> keys = new ArrayList<Integer>();
+        while (jobs.hasNext()) {
+            keys.add(jobs.next().key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Red-Black tree structure under random inserts, batch inserts and deletes by key and by
+ * node: keys in order, parent links, subtree sizes, red nodes with black children, a black
+ * root and the same number of black nodes on every path to a leaf.
+ * @author KUNWAR
+ */
+public class RedBlackTreeTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        RedBlackTree tree = new RedBlackTree();
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int op = 0; op < 3000; op++) {
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                int key = random.nextInt(5000);
+                if (tree.search(key) == null) {
+                    tree.insertNode(new RBNode(key));
+                    keys.add(key);
+                }
+            } else if (kind < 6) {
+                //Sorted run of new keys above every key in tree
+                int start = tree.size() == 0 ? 0 : tree.select(tree.size()).key + 1;
+                int n = random.nextInt(300);
+                RBNode[] nodes = new RBNode[n];
+                for (int i = 0; i < n; i++) {
+                    nodes[i] = new RBNode(start + 2 * i);
+                    keys.add(start + 2 * i);
+                }
+                tree.insertAll(nodes, n);
+            } else if (!keys.isEmpty()) {
+                int key = keys.remove(random.nextInt(keys.size()));
+                boolean deleted = random.nextBoolean() ? tree.delete(key) : tree.delete(tree.search(key));
+                Check.check(deleted, "delete " + key);
+                Check.check(tree.search(key) == null, "deleted " + key + " still found");
+                Check.check(!tree.delete(key), "delete missing " + key);
+            }
+            Check.equal(keys.size(), tree.size(), "size");
+            Check.check(tree.root.color == RedBlackTree.COLOR.BLACK, "root is red");
+            Check.equal(tree.blackHeight(), blackHeight(tree, tree.root, Long.MIN_VALUE, Long.MAX_VALUE), "black height");
+        }
+    }
+
+    /**
+     * @param tree
+     * @param node
+     * @param low Keys of subtree must be greater than low
+     * @param high and less than high
+     * @return black nodes on every path from node down to a leaf, sentinel not counted
+     */
+    private static int blackHeight(RedBlackTree tree, RBNode node, long low, long high) {
+        if (node == tree.nil) {
+            return 0;
+        }
+        //Messages are only built on failure, this runs for every node after every operation
+        if (node.key <= low || node.key >= high) {
+            Check.check(false, "key " + node.key + " out of order");
+        }
+        if (node.color == RedBlackTree.COLOR.RED
+                && (node.left.color == RedBlackTree.COLOR.RED || node.right.color == RedBlackTree.COLOR.RED)) {
+            Check.check(false, "red node " + node.key + " has a red child");
+        }
+        if (node.size != node.left.size + node.right.size + 1) {
+            Check.check(false, "size of subtree of " + node.key + " is " + node.size);
+        }
+        if ((node.left != tree.nil && node.left.parent != node) || (node.right != tree.nil && node.right.parent != node)) {
+            Check.check(false, "parent link of a child of " + node.key);
+        }
+        int left = blackHeight(tree, node.left, low, node.key);
+        int right = blackHeight(tree, node.right, node.key, high);
+        if (left != right) {
+            Check.check(false, "black heights below " + node.key + ": " + left + " and " + right);
+        }
+        return left + (node.color == RedBlackTree.COLOR.BLACK ? 1 : 0);
+    }
+}
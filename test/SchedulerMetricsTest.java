@@ -0,0 +1,85 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Histogram values and percentiles against sorted samples, and the counters SchedulerMetrics
+ * reports for a run that is worked out by hand.
+ * @author KUNWAR
+ */
+public class SchedulerMetricsTest {
+
+    public static void main(String[] args) throws Exception {
+        histogram();
+        metrics();
+    }
+
+    private static void histogram() {
+        Histogram empty = new Histogram();
+        Check.equal(0, empty.count(), "empty count");
+        Check.equal(0, empty.min(), "empty min");
+        Check.equal(0, empty.percentile(50), "empty p50");
+
+        //Small values are counted exactly
+        Histogram small = new Histogram();
+        for (int v = 0; v < 256; v++) {
+            small.record(v);
+        }
+        small.record(-5);//Counted as 0
+        Check.equal(257, small.count(), "small count");
+        Check.equal(0, small.min(), "small min");
+        Check.equal(255, small.max(), "small max");
+        Check.equal(127, small.percentile(50), "small p50");
+        Check.equal(255, small.percentile(100), "small p100");
+
+        //Large values within 1% of the sample at each percentile
+        Random random = new Random(15);
+        long[] samples = new long[20000];
+        Histogram large = new Histogram();
+        long sum = 0;
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (long) (Math.exp(random.nextDouble() * 30));
+            large.record(samples[i]);
+            sum += samples[i];
+        }
+        Arrays.sort(samples);
+        Check.equal(samples[0], large.min(), "large min");
+        Check.equal(samples[samples.length - 1], large.max(), "large max");
+        Check.check(Math.abs(large.mean() - (double) sum / samples.length) < 1e-6 * large.mean(), "large mean");
+        for (double p : new double[]{1, 10, 50, 90, 99, 99.9, 100}) {
+            long want = samples[(int) Math.ceil(p / 100 * samples.length) - 1];
+            long got = large.percentile(p);
+            Check.check(got >= want && got <= want + want / 100, "p" + p + ": expected about " + want + " but was " + got);
+        }
+    }
+
+    /**
+     * One processor, 5 ms slots. Job 1 (12 ms) arrives at 0, job 2 (3 ms) at 2.
+     * Job 1 runs until 5, job 2 waits 3 ms and completes at 7, then job 1 takes two more
+     * slots and completes at 13: 4 dispatches, 2 of them preempted at a slot end.
+     */
+    private static void metrics() throws Exception {
+        Scheduler scheduler = new Scheduler(1, 2);
+        scheduler.metrics = new SchedulerMetrics();
+        scheduler.insertJob(1, 12);
+        scheduler.dispatchOrUpdateJobs();
+        scheduler.advanceTo(2);
+        scheduler.insertJob(2, 3);
+        Check.equal(2, scheduler.jobCount(), "jobs counted");
+        scheduler.executeRemainingJobs();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, "UTF-8");
+        scheduler.metrics.report(out, scheduler.time());
+        String report = bytes.toString("UTF-8");
+        Check.check(report.contains("jobs arrived: 2, completed: 2"), report);
+        Check.check(report.contains("dispatches: 4, preemptions: 2"), report);
+        Check.check(report.contains("wait time (ms): count=2 min=0 mean=1.5 "), report);
+        Check.check(report.contains("turnaround time (ms): count=2 min=5 mean=9.0 "), report);
+        Check.check(report.contains("preemptions per job: count=2 min=0 mean=1.0 p50=0 p90=2 p99=2 p99.9=2 max=2"), report);
+        Check.check(report.contains("indexed jobs at dispatch: count=4 min=1 mean=1.3 p50=1 p90=2 p99=2 p99.9=2 max=2"), report);
+        Check.check(report.contains("max tree black height: 1 "), report);
+        Check.equal(0, scheduler.jobCount(), "jobs left");
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Producers insert jobs into a running SchedulerService while readers query them and
+ * checkpoints are taken, with every kind of index. Readers check that executed times stay
+ * within total times and never go back, every checkpoint must restore to a consistent
+ * scheduler, and every job must complete.
+ * @author KUNWAR
+ */
+public class SchedulerServiceTest {
+
+    private static final int JOBS = 100;
+
+    public static void main(String[] args) throws Exception {
+        for (String index : new String[]{"rbt", "skiplist", "persistent", "sharded"}) {
+            run(index);
+        }
+    }
+
+    private static void run(final String name) throws Exception {
+        final SchedulerService service = new SchedulerService(2, 2, newIndex(name));
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        service.start();
+        Thread[] threads = new Thread[5];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (thread < 2) {
+                            for (int id = thread; id < JOBS; id += 2) {
+                                service.insert(id * 3, 1 + id % 20);
+                            }
+                        } else if (thread < 4) {
+                            read(service, name);
+                        } else {
+                            checkpoint(service, name);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(name, failure.get());
+        }
+        long deadline = System.currentTimeMillis() + 30000;
+        while (service.countJobs(0, 3 * JOBS) > 0) {
+            Check.check(System.currentTimeMillis() < deadline, name + " jobs did not complete");
+            Thread.sleep(10);
+        }
+        Check.check(service.printJob(0) == null && service.nextJob(-1) == null, name + " empty after completion");
+        service.close();
+    }
+
+    private static JobIndex newIndex(String name) {
+        return Scheduler.newIndex(name, 4, 4 * JOBS);
+    }
+
+    /**
+     * Checkpoints taken while jobs run must hold every job once, either waiting or running
+     */
+    private static void checkpoint(SchedulerService service, String name) throws Exception {
+        File file = File.createTempFile("service", ".ckp");
+        try {
+            for (int i = 0; i < 20; i++) {
+                service.checkpoint(file);
+                Scheduler restored = new Scheduler(2, 2, newIndex(name));
+                Checkpoint.restore(file, restored);
+                int running = 0;
+                for (Processor p : restored.processors) {
+                    if (!p.isIdle()) {
+                        running++;
+                        Check.check(restored.index.search(p.currentJob.rbNode.key) == p.currentJob.rbNode, name + " running job in index");
+                    }
+                }
+                Check.equal(restored.index.size(), restored.policy.size() + running, name + " jobs in checkpoint");
+                Thread.sleep(5);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void read(SchedulerService service, String name) {
+        Map<Integer, Integer> executed = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 2000; i++) {
+            List<JobStatus> jobs = service.printJobs(0, 3 * JOBS);
+            int previous = -1;
+            for (JobStatus job : jobs) {
+                Check.check(job.jobId > previous, name + " jobs in ID order");
+                previous = job.jobId;
+                Check.check(job.executedTime >= 0 && job.executedTime < job.totalTime,
+                        name + " executed time of " + job + " out of range");
+                Integer seen = executed.put(job.jobId, job.executedTime);
+                Check.check(seen == null || seen <= job.executedTime, name + " executed time of " + job + " went back from " + seen);
+            }
+            JobStatus first = service.nextJob(-1);
+            if (first != null) {
+                JobStatus again = service.printJob(first.jobId);//null if completed in between
+                Check.check(again == null || again.executedTime >= first.executedTime, name + " lookup of " + first);
+            }
+        }
+    }
+}
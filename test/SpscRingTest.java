@@ -0,0 +1,97 @@
+/**
+ * A producer and a consumer thread pass numbered items through a small ring: every item
+ * arrives once and in order, and closing by either side ends the transfer without hanging.
+ * @author KUNWAR
+ */
+public class SpscRingTest {
+
+    private static final long TIME_LIMIT_MS = 30000;
+
+    /**
+     * Slot filled in place by the producer
+     */
+    private static class Item {
+        long value;
+    }
+
+    public static void main(String[] args) throws Exception {
+        try {
+            new SpscRing<Item>(new Item[3]);
+            Check.check(false, "ring of 3 slots accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        transfer(200000);
+        consumerCloses();
+    }
+
+    private static SpscRing<Item> newRing(int size) {
+        Item[] slots = new Item[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Item();
+        }
+        return new SpscRing<Item>(slots);
+    }
+
+    /**
+     * Producer publishes count items and closes, consumer takes them all
+     */
+    private static void transfer(final long count) throws Exception {
+        final SpscRing<Item> ring = newRing(8);
+        final long[] received = {0};
+        final String[] failure = {null};
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Item item;
+                while ((item = ring.take()) != null) {
+                    if (item.value != received[0] && failure[0] == null) {
+                        failure[0] = "item " + received[0] + " was " + item.value;
+                    }
+                    received[0]++;
+                    ring.release();
+                }
+            }
+        }, "consumer");
+        consumer.start();
+        for (long i = 0; i < count; i++) {
+            Item item = ring.claim();
+            Check.check(item != null, "slot claimed while consumer runs");
+            item.value = i;
+            ring.publish();
+        }
+        ring.awaitEmpty();
+        ring.close();
+        consumer.join(TIME_LIMIT_MS);
+        Check.check(!consumer.isAlive(), "consumer did not see the ring closed");
+        Check.equal(null, failure[0], "order");
+        Check.equal(count, received[0], "items received");
+    }
+
+    /**
+     * Consumer stops after a few items, producer waiting for space gives up
+     */
+    private static void consumerCloses() throws Exception {
+        final SpscRing<Item> ring = newRing(4);
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    ring.take();
+                    ring.release();
+                }
+                ring.close();
+            }
+        }, "consumer");
+        consumer.start();
+        long published = 0;
+        Item item;
+        while ((item = ring.claim()) != null) {
+            item.value = published++;
+            ring.publish();
+        }
+        consumer.join(TIME_LIMIT_MS);
+        Check.check(!consumer.isAlive(), "consumer did not finish");
+        Check.check(published >= 10 && published <= 14, "published after consumer closed: " + published);
+        Check.check(ring.isClosed(), "ring closed");
+    }
+}
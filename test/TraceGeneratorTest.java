@@ -0,0 +1,89 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Traces of every arrival process and total_time distribution read back with CommandReader:
+ * well formed commands at strictly increasing times, the requested number of unique jobs with
+ * total times in bounds, and queries only after the first insert. The same seed gives the
+ * same file, another seed a different one.
+ * @author KUNWAR
+ */
+public class TraceGeneratorTest {
+
+    public static void main(String[] args) throws Exception {
+        String[][] cases = {
+                {"poisson", "pareto", "sequential"},
+                {"bursty", "uniform", "random"},
+                {"constant", "exponential", "sequential"},
+        };
+        for (String[] c : cases) {
+            TraceGenerator generator = generator(c[0], c[1], c[2], 1);
+            File first = File.createTempFile("trace", ".txt");
+            File again = File.createTempFile("trace", ".txt");
+            File other = File.createTempFile("trace", ".txt");
+            try {
+                long lines = generator.generate(first.getPath());
+                check(Arrays.toString(c), first, lines, generator);
+                generator.generate(again.getPath());
+                Check.check(Arrays.equals(Files.readAllBytes(first.toPath()), Files.readAllBytes(again.toPath())),
+                        Arrays.toString(c) + " same seed gave another trace");
+                generator(c[0], c[1], c[2], 2).generate(other.getPath());
+                Check.check(!Arrays.equals(Files.readAllBytes(first.toPath()), Files.readAllBytes(other.toPath())),
+                        Arrays.toString(c) + " other seed gave the same trace");
+            } finally {
+                first.delete();
+                again.delete();
+                other.delete();
+            }
+        }
+    }
+
+    private static TraceGenerator generator(String arrival, String totalTime, String ids, long seed) {
+        TraceGenerator generator = new TraceGenerator();
+        generator.jobs = 3000;
+        generator.arrival = arrival;
+        generator.meanGap = 3;
+        generator.burstLength = 10;
+        generator.totalTime = totalTime;
+        generator.minTotal = 2;
+        generator.maxTotal = 5000;
+        generator.ids = ids;
+        generator.mix = TraceGenerator.parseMix("insert:30,batch:2,print:10,range:10,next:10,previous:10,count:5,rank:5,select:5");
+        generator.batchSize = 20;
+        generator.seed = seed;
+        return generator;
+    }
+
+    private static void check(String name, File trace, long lines, TraceGenerator generator) throws Exception {
+        Set<Integer> ids = new HashSet<Integer>();
+        CommandReader reader = new CommandReader(trace);
+        try {
+            long count = 0;
+            long lastTime = -1;
+            while (reader.next()) {
+                count++;
+                String line = name + " line " + count;
+                Check.check(reader.command > CommandReader.UNKNOWN, line + " is not a known command");
+                Check.check(reader.time > lastTime, line + " time " + reader.time + " not after " + lastTime);
+                lastTime = reader.time;
+                if (reader.command == CommandReader.INSERT || reader.command == CommandReader.INSERT_BATCH) {
+                    Check.equal(0, reader.paramCount % 2, line + " argument count");
+                    for (int i = 0; i < reader.paramCount; i += 2) {
+                        Check.check(ids.add(reader.params[i]), line + " repeats job " + reader.params[i]);
+                        int total = reader.params[i + 1];
+                        Check.check(total >= generator.minTotal && total <= generator.maxTotal, line + " total time " + total);
+                    }
+                } else {
+                    Check.check(!ids.isEmpty(), line + " queries before first insert");
+                }
+            }
+            Check.equal(lines, count, name + " number of commands");
+            Check.equal(generator.jobs, ids.size(), name + " number of jobs");
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scheduler rebuilt from its log, alone or on top of a checkpoint, ends in the same state as
+ * the one that wrote it. A torn record at the end, or a damaged one in the middle, is cut off
+ * with everything after it. Records before a checkpoint can be discarded and the rest still
+ * replay. Concurrent appenders all get their records on disk, sharing forces.
+ * SchedulerService recovers every inserted job from a log discarded up to its checkpoint.
+ * @author KUNWAR
+ */
+public class WriteAheadLogTest {
+
+    private static final int HEADER_SIZE = 12;//magic, position of first record
+    private static final int RECORD_SIZE = 17;//type, time, jobID, total time, CRC32
+
+    public static void main(String[] args) throws Exception {
+        File logFile = File.createTempFile("scheduler", ".log");
+        File checkpointFile = File.createTempFile("scheduler", ".ckp");
+        try {
+            replay(logFile, checkpointFile);
+            tornRecord(logFile);
+            damagedRecord(logFile);
+            discard(logFile, checkpointFile);
+            groupCommit(logFile);
+            service(logFile, checkpointFile);
+        } finally {
+            logFile.delete();
+            checkpointFile.delete();
+        }
+    }
+
+    /**
+     * Inserts applied the way SchedulerService applies them, completions logged by the scheduler
+     */
+    private static void insert(Scheduler scheduler, WriteAheadLog log, int time, int jobId, int totalTime) {
+        scheduler.advanceTo(time);
+        log.append(WriteAheadLog.INSERT, scheduler.time(), jobId, totalTime);
+        scheduler.insertJob(jobId, totalTime);
+        scheduler.dispatchOrUpdateJobs();
+    }
+
+    private static void replay(File logFile, File checkpointFile) throws IOException {
+        logFile.delete();
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        Scheduler original = new Scheduler(2, 2);
+        original.log = log;
+        long offset = 0;
+        for (int i = 0; i < 300; i++) {
+            insert(original, log, i * 4, i * 7 + 3, 1 + (i * 31) % 50);
+            if (i == 150) {
+                offset = log.position();
+                Checkpoint.save(checkpointFile, original, offset, 0);
+            }
+        }
+        original.advanceTo(1500);//Some jobs completed after the last insert
+        log.close();
+
+        WriteAheadLog reopened = new WriteAheadLog(logFile);
+        Scheduler whole = new Scheduler(2, 2);
+        int records = reopened.replay(whole, 0);
+        Check.check(records > 300, "completions replayed: " + records);
+        whole.advanceTo(1500);
+        same(original, whole, "replay of whole log");
+        reopened.close();
+
+        reopened = new WriteAheadLog(logFile);
+        Scheduler restored = new Scheduler(2, 2);
+        Checkpoint.restore(checkpointFile, restored);
+        Check.check(reopened.replay(restored, offset) < records, "replay from checkpoint starts at its offset");
+        restored.advanceTo(1500);
+        same(original, restored, "replay from checkpoint");
+        reopened.close();
+    }
+
+    private static void tornRecord(File logFile) throws IOException {
+        logFile.delete();
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        Scheduler original = new Scheduler(1, 2);
+        original.log = log;
+        for (int i = 0; i < 10; i++) {
+            insert(original, log, i, i, 100);
+        }
+        log.close();
+        RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        try {
+            file.seek(file.length());
+            file.write(new byte[]{WriteAheadLog.INSERT, 0, 0, 0, 20, 0});//Crash in the middle of a record
+        } finally {
+            file.close();
+        }
+
+        WriteAheadLog reopened = new WriteAheadLog(logFile);
+        Scheduler replayed = new Scheduler(1, 2);
+        Check.equal(10, reopened.replay(replayed, 0), "records before torn one");
+        Check.equal(HEADER_SIZE + 10 * RECORD_SIZE, logFile.length(), "log cut back to whole records");
+        same(original, replayed, "replay with torn record");
+        reopened.close();
+    }
+
+    private static void damagedRecord(File logFile) throws IOException {
+        logFile.delete();
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        Scheduler original = new Scheduler(1, 2);
+        original.log = log;
+        for (int i = 0; i < 5; i++) {
+            insert(original, log, i, i, 100);
+        }
+        for (int i = 5; i < 10; i++) {
+            insert(original, log, i, i, 100);
+        }
+        log.close();
+        RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        try {
+            file.seek(HEADER_SIZE + 5 * RECORD_SIZE + 6);//jobID of sixth record
+            file.write(0x40);
+        } finally {
+            file.close();
+        }
+
+        WriteAheadLog reopened = new WriteAheadLog(logFile);
+        Scheduler replayed = new Scheduler(1, 2);
+        Check.equal(5, reopened.replay(replayed, 0), "records before damaged one");
+        Check.equal(HEADER_SIZE + 5 * RECORD_SIZE, logFile.length(), "log cut back at damaged record");
+        Check.equal(null, replayed.index.search(5), "damaged record not applied");
+        reopened.close();
+    }
+
+    /**
+     * Records before a checkpoint are dropped, the rest replay on top of it as before
+     */
+    private static void discard(File logFile, File checkpointFile) throws IOException {
+        logFile.delete();
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        Scheduler original = new Scheduler(2, 2);
+        original.log = log;
+        for (int i = 0; i < 50; i++) {
+            insert(original, log, i * 4, i, 1 + (i * 13) % 30);
+        }
+        long offset = log.position();
+        Checkpoint.save(checkpointFile, original, offset, 0);
+        log.sync(offset);
+        log.discardBefore(offset);
+        Check.equal((long) HEADER_SIZE, logFile.length(), "records before checkpoint dropped");
+        for (int i = 50; i < 100; i++) {
+            insert(original, log, i * 4, i, 1 + (i * 13) % 30);
+        }
+        original.advanceTo(600);
+        log.close();
+        Check.equal(HEADER_SIZE + log.position() - offset, logFile.length(), "log holds records since checkpoint");
+
+        WriteAheadLog reopened = new WriteAheadLog(logFile);
+        Check.equal(log.position(), reopened.position(), "position kept across discard");
+        try {
+            reopened.replay(new Scheduler(2, 2), 0);
+            Check.check(false, "replay from discarded records");
+        } catch (IOException expected) {
+        }
+        Scheduler restored = new Scheduler(2, 2);
+        Checkpoint.restore(checkpointFile, restored);
+        Check.check(reopened.replay(restored, offset) >= 50, "records after checkpoint replayed");
+        restored.advanceTo(600);
+        same(original, restored, "replay after discard");
+        reopened.close();
+    }
+
+    private static void groupCommit(final File logFile) throws Exception {
+        logFile.delete();
+        final WriteAheadLog log = new WriteAheadLog(logFile);
+        final int threads = 4;
+        final int perThread = 500;
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> appenders = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            appenders.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perThread; i++) {
+                            long position = log.append(WriteAheadLog.INSERT, i, thread * perThread + i, 1);
+                            log.sync(position);
+                            Check.check(logFile.length() >= position, "sync returned before record was written");
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread appender : appenders) appender.start();
+        for (Thread appender : appenders) appender.join();
+        Check.check(failures.isEmpty(), "appender failed: " + failures);
+        Check.equal((long) threads * perThread * RECORD_SIZE, log.position(), "log length");
+        Check.check(log.forces() >= 1 && log.forces() <= threads * perThread, "forces: " + log.forces());
+        log.close();
+        Check.equal((long) HEADER_SIZE + threads * perThread * RECORD_SIZE, logFile.length(), "file length");
+    }
+
+    private static void service(File logFile, File checkpointFile) throws Exception {
+        logFile.delete();
+        checkpointFile.delete();
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        SchedulerService service = new SchedulerService(2, 2, new RedBlackTree(), log);
+        service.recover(checkpointFile);//Nothing to recover from
+        service.start();
+        for (int id = 1; id <= 200; id++) {
+            service.insert(id, 1000000);//Still running when service stops
+            if (id == 100) {
+                service.checkpoint(checkpointFile);
+            }
+        }
+        service.close();
+        log.close();
+
+        WriteAheadLog reopened = new WriteAheadLog(logFile);
+        SchedulerService recovered = new SchedulerService(2, 2, new RedBlackTree(), reopened);
+        Check.equal(100, recovered.recover(checkpointFile), "records after checkpoint");
+        Check.equal(200, recovered.countJobs(1, 200), "jobs recovered");
+        reopened.close();
+    }
+
+    /**
+     * Same time, same jobs with same executed times and same jobs on processors
+     */
+    private static void same(Scheduler a, Scheduler b, String what) {
+        Check.equal(a.time(), b.time(), what + " time");
+        Check.equal(a.index.size(), b.index.size(), what + " jobs");
+        Check.equal(a.policy.size(), b.policy.size(), what + " waiting jobs");
+        List<RBNode> x = a.index.searchInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        List<RBNode> y = b.index.searchInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        for (int i = 0; i < x.size(); i++) {
+            Check.equal(x.get(i).key, y.get(i).key, what + " job " + i);
+            Check.equal(x.get(i).heapNode.key, y.get(i).heapNode.key, what + " executed time of " + x.get(i).key);
+        }
+        for (int p = 0; p < a.processors.length; p++) {
+            HeapNode j = a.processors[p].currentJob;
+            HeapNode k = b.processors[p].currentJob;
+            Check.equal(j == null ? -1 : j.rbNode.key, k == null ? -1 : k.rbNode.key, what + " job on processor " + p);
+        }
+    }
+}